@@ -0,0 +1,186 @@
+package com.example.dentalbot;
+
+import com.example.dentalbot.db.BenchmarkDatabase;
+import com.example.dentalbot.util.CallbackData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Contact;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// To'liq yo'l: onUpdateReceived -> UpdateDispatcher -> handler -> OutboundQueue -> executeAsync.
+// Telegram API o'rniga so'rov faqat JSON'ga serializatsiya qilinadi, navbat limitlari o'chirilgan.
+// Har bir chaqiruv BATCH ta update yuboradi va hammasi ishlanib, javoblar "yuborilguncha" kutadi.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DentalBotBenchmark {
+    private static final int BATCH = 256;
+    private static final int FLOW_UPDATES = 6;
+    private static final int FLOW_CHATS = BATCH / FLOW_UPDATES;
+    private static final double UNLIMITED = 1e9;
+
+    static class StubbedDentalBot extends DentalBot {
+        private final ObjectMapper mapper = new ObjectMapper();
+
+        StubbedDentalBot() {
+            super(sender -> new OutboundQueue(sender, UNLIMITED, UNLIMITED, UNLIMITED), new SqliteUserStateStore());
+        }
+
+        @Override
+        protected <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> sendApiMethodAsync(Method method) {
+            try {
+                mapper.writeValueAsBytes(method);
+                return CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<Message> executeAsync(SendDocument sendDocument) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private StubbedDentalBot bot;
+    private PrintStream originalOut;
+    private final Random random = new Random(11);
+    private long nextNewChatId = BenchmarkDatabase.CHATS + 1;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.setUp();
+        // Callback loglari o'lchov natijalarini ko'mib yubormasligi uchun
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        bot = new StubbedDentalBot();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    private void awaitIdle() {
+        while (bot.pendingWork() > 0) {
+            LockSupport.parkNanos(10_000);
+        }
+    }
+
+    // Mavjud bemorlar menyular bo'ylab yuradi: /start, navbatlarim, xizmat, kun bo'yicha vaqtlar
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void browse() {
+        for (int i = 0; i < BATCH; i++) {
+            long chatId = BenchmarkDatabase.randomChatId(random);
+            switch (i & 3) {
+                case 0:
+                    bot.onUpdateReceived(text(chatId, "/start"));
+                    break;
+                case 1:
+                    bot.onUpdateReceived(callback(chatId, "my_appointments"));
+                    break;
+                case 2:
+                    bot.onUpdateReceived(callback(chatId, CallbackData.service(1 + random.nextInt(3))));
+                    break;
+                default:
+                    LocalDate day = LocalDate.now().plusDays(1 + random.nextInt(BenchmarkDatabase.FUTURE_DAYS - 1));
+                    bot.onUpdateReceived(callback(chatId, CallbackData.showDay(day)));
+            }
+        }
+        awaitIdle();
+    }
+
+    // Yangi bemorlar to'liq band qilish oqimidan o'tadi (6 ta update); ko'p vaqtlar band bo'lgani uchun
+    // ularning bir qismi TAKEN javobi va keyingi bo'sh vaqt taklifini oladi
+    @Benchmark
+    @OperationsPerInvocation(FLOW_CHATS * FLOW_UPDATES)
+    public void bookingFlow() {
+        List<Update> updates = new ArrayList<>(FLOW_UPDATES);
+        for (int i = 0; i < FLOW_CHATS; i++) {
+            long chatId = nextNewChatId++;
+            LocalDateTime time = BenchmarkDatabase.randomFutureSlot(random);
+            updates.clear();
+            updates.add(callback(chatId, CallbackData.queueRegister(1 + random.nextInt(3))));
+            updates.add(contact(chatId, "+99890" + String.format("%07d", chatId % 10_000_000)));
+            updates.add(text(chatId, "Benchmark Bemor " + chatId));
+            updates.add(callback(chatId, CallbackData.showDay(time.toLocalDate())));
+            updates.add(callback(chatId, CallbackData.selectTime(time, 0)));
+            updates.add(callback(chatId, CallbackData.confirmTime(time, 0)));
+            updates.forEach(bot::onUpdateReceived);
+        }
+        awaitIdle();
+    }
+
+    private static Update text(long chatId, String text) {
+        Message message = message(chatId);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    private static Update contact(long chatId, String phone) {
+        Contact contact = new Contact();
+        contact.setPhoneNumber(phone);
+        contact.setUserId(chatId);
+        Message message = message(chatId);
+        message.setContact(contact);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    private static Update callback(long chatId, String data) {
+        CallbackQuery query = new CallbackQuery();
+        query.setId(String.valueOf(chatId));
+        query.setFrom(user(chatId));
+        // Tugma matnli xabarda turadi - javob shu xabarni tahrirlaydi (EditMessageText)
+        Message origin = message(chatId);
+        origin.setText("menyu");
+        query.setMessage(origin);
+        query.setData(data);
+        Update update = new Update();
+        update.setCallbackQuery(query);
+        return update;
+    }
+
+    private static Message message(long chatId) {
+        Message message = new Message();
+        message.setMessageId(1);
+        message.setChat(new Chat(chatId, "private"));
+        message.setFrom(user(chatId));
+        message.setDate((int) (System.currentTimeMillis() / 1000));
+        return message;
+    }
+
+    private static User user(long chatId) {
+        return new User(chatId, "Bemor", false);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.util.ClinicCalendar;
+import com.example.dentalbot.util.TimeSlots;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Navbat band qilishning asosiy yo'llari, 100k navbatli baza ustida (BenchmarkDatabase)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AppointmentRepositoryBenchmark {
+    private static final int PROBES = 4096;
+    // Standart xizmatlar: 3 - "Tish qo'ydirish" (90 daqiqa), 4 - "Maslahat olish" (30 daqiqa)
+    private static final int LONG_SERVICE_ID = 3;
+    private static final int SHORT_SERVICE_ID = 4;
+
+    private AppointmentRepository repo;
+    private final String[] futureSlots = new String[PROBES];
+    private final String[] bookedSlots = new String[PROBES];
+    private final long[] chatIds = new long[PROBES];
+    private int cursor;
+    // Yangi navbatlar seed ma'lumotlari bilan to'qnashmasligi uchun uzoq kelajakka yoziladi
+    private LocalDateTime nextFreeSlot = LocalDateTime.of(2100, 1, 4, 8, 0);
+    private final ClinicCalendar calendar = ClinicCalendar.getInstance();
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.setUp();
+        repo = new AppointmentRepository();
+
+        Random random = new Random(7);
+        int booked = 0;
+        for (int i = 0; i < PROBES; i++) {
+            futureSlots[i] = TimeSlots.format(BenchmarkDatabase.randomFutureSlot(random));
+            chatIds[i] = BenchmarkDatabase.randomChatId(random);
+        }
+        while (booked < PROBES) {
+            String slot = TimeSlots.format(BenchmarkDatabase.randomFutureSlot(random));
+            if (repo.isTimeBooked(slot)) {
+                bookedSlots[booked++] = slot;
+            }
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (PROBES - 1);
+    }
+
+    @Benchmark
+    public boolean isTimeBooked() {
+        return repo.isTimeBooked(futureSlots[next()]);
+    }
+
+    // 90 daqiqalik oraliq: uchta slot bitmask bo'yicha tekshiriladi
+    @Benchmark
+    public boolean isIntervalBooked() {
+        return repo.isTimeBooked(futureSlots[next()], 90);
+    }
+
+    @Benchmark
+    public void saveAppointment() {
+        String time = TimeSlots.format(nextFreeSlot);
+        // Keyingi ish slotiga (ClinicCalendar: tungi soatlar, dam olish va bayram kunlari yopiq)
+        do {
+            nextFreeSlot = nextFreeSlot.plusMinutes(TimeSlots.SLOT_MINUTES);
+        } while (!TimeSlots.isSet(calendar.openSlots(nextFreeSlot.toLocalDate()),
+                TimeSlots.slotOf(nextFreeSlot.toLocalTime())));
+        repo.saveAppointment(1, time, "+998901234567", "Benchmark Bemor", SHORT_SERVICE_ID);
+    }
+
+    // Band vaqtga urinish: INSERT to'qnashuvi va eng yaqin bo'sh vaqtlar taklifi
+    @Benchmark
+    public AppointmentRepository.Reservation reserveTakenSlot() {
+        return repo.reserveSlot(1, bookedSlots[next()], "+998901234567", "Benchmark Bemor", LONG_SERVICE_ID);
+    }
+
+    @Benchmark
+    public String findNextAvailableTime() {
+        return repo.findNextAvailableTime(bookedSlots[next()], LONG_SERVICE_ID);
+    }
+
+    @Benchmark
+    public List<String> findAlternativeTimes() {
+        return repo.findAlternativeTimes(bookedSlots[next()], LONG_SERVICE_ID, 4);
+    }
+
+    @Benchmark
+    public List<AppointmentRepository.Appointment> getUserAppointmentsList() {
+        return repo.getUserAppointmentsList(chatIds[next()]);
+    }
+
+    @Benchmark
+    public long getFreeSlots() {
+        return repo.getFreeSlots(TimeSlots.parse(futureSlots[next()]).toLocalDate(), LONG_SERVICE_ID);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.util.TimeSlots;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+// Benchmark'lar uchun vaqtinchalik SQLite baza. Har bir JMH fork'ida bir marta yaratiladi va
+// taxminan real hajmda to'ldiriladi: 100k navbat, 20k bemor, kelgusi 60 kun ~70% band,
+// qolgani o'tgan yillar tarixi. DatabaseManager'ga birinchi murojaatdan oldin chaqirilishi kerak.
+public final class BenchmarkDatabase {
+    public static final int APPOINTMENTS = 100_000;
+    public static final int CHATS = 20_000;
+    public static final int FUTURE_DAYS = 60;
+    public static final int FIRST_HOUR = 8;
+    public static final int LAST_HOUR = 18;
+    private static final double FUTURE_OCCUPANCY = 0.7;
+    private static final long SEED = 42;
+
+    private static File file;
+
+    private BenchmarkDatabase() {
+    }
+
+    public static synchronized void setUp() {
+        if (file != null) {
+            return;
+        }
+        try {
+            file = File.createTempFile("dentalbot-bench", ".db");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        file.deleteOnExit();
+        new File(file.getPath() + "-wal").deleteOnExit();
+        new File(file.getPath() + "-shm").deleteOnExit();
+        System.setProperty("dentalbot.db.url", "jdbc:sqlite:" + file.getAbsolutePath());
+        seed();
+    }
+
+    // Ish vaqtidagi tasodifiy kelgusi slot (band yoki bo'sh bo'lishi mumkin)
+    public static LocalDateTime randomFutureSlot(Random random) {
+        return LocalDate.now().plusDays(1 + random.nextInt(FUTURE_DAYS - 1))
+                .atTime(FIRST_HOUR + random.nextInt(LAST_HOUR - FIRST_HOUR + 1), random.nextBoolean() ? 30 : 0);
+    }
+
+    public static long randomChatId(Random random) {
+        return 1 + random.nextInt(CHATS);
+    }
+
+    private static void seed() {
+        String sql = "INSERT INTO appointments(chat_id, full_name, phone, service_id, start_minute, end_minute, " +
+                "reminder_sent_1day, reminder_sent_2hours, reminder_sent_30min) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        Random random = new Random(SEED);
+        LocalDateTime now = LocalDateTime.now();
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            int inserted = 0;
+            // Oxirgi kundan orqaga qarab: kelgusi kunlar zich, o'tgan kunlar to'liq band
+            for (LocalDate day = now.toLocalDate().plusDays(FUTURE_DAYS - 1); inserted < APPOINTMENTS; day = day.minusDays(1)) {
+                for (int hour = FIRST_HOUR; hour <= LAST_HOUR && inserted < APPOINTMENTS; hour++) {
+                    for (int minute = 0; minute < 60 && inserted < APPOINTMENTS; minute += TimeSlots.SLOT_MINUTES) {
+                        LocalDateTime slot = day.atTime(hour, minute);
+                        boolean past = slot.isBefore(now);
+                        if (!past && random.nextDouble() >= FUTURE_OCCUPANCY) {
+                            continue;
+                        }
+                        long chatId = randomChatId(random);
+                        pstmt.setLong(1, chatId);
+                        pstmt.setString(2, "Bemor " + chatId);
+                        pstmt.setString(3, "+99890" + String.format("%07d", chatId));
+                        pstmt.setInt(4, 1 + random.nextInt(3));
+                        pstmt.setLong(5, TimeSlots.epochMinute(slot));
+                        pstmt.setLong(6, TimeSlots.epochMinute(slot) + TimeSlots.SLOT_MINUTES);
+                        pstmt.setBoolean(7, past);
+                        pstmt.setBoolean(8, past);
+                        pstmt.setBoolean(9, past);
+                        pstmt.addBatch();
+                        inserted++;
+                    }
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Benchmark bazasini to'ldirib bo'lmadi: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.util.TimeSlots;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Eski checkAndSendReminders (har 30 daqiqada to'liq skan) o'rniga ReminderScheduler ishlaydi.
+// Uning qimmat qismlari: ishga tushgandagi yuklash va har bir saqlash/bekor qilishda navbatni yangilash.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReminderSchedulerBenchmark {
+    private ReminderScheduler loaded;
+    private int nextId = Integer.MAX_VALUE / 2;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.setUp();
+        // Yuborish o'lchanmaydi, shuning uchun chiquvchi navbat kerak emas
+        loaded = new ReminderScheduler(null);
+        loaded.loadPending();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int loadPending() {
+        ReminderScheduler scheduler = new ReminderScheduler(null);
+        scheduler.loadPending();
+        return scheduler.pending();
+    }
+
+    // Kelgusi navbatlar to'la navbat ustida bitta navbatni qo'shib, qayta olib tashlash
+    @Benchmark
+    public int scheduleAndCancel() {
+        AppointmentRepository.Appointment appointment = new AppointmentRepository.Appointment(
+                nextId++, 1, "Benchmark Bemor", "+998901234567", 1, null,
+                TimeSlots.format(LocalDateTime.now().plusDays(3)));
+        loaded.appointmentSaved(appointment);
+        loaded.appointmentDeleted(appointment);
+        return loaded.pending();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.dentalbot.util;
+
+import com.example.dentalbot.db.BenchmarkDatabase;
+import com.example.dentalbot.db.ServiceCatalogCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.concurrent.TimeUnit;
+
+// Menyularni har safar qurish va tayyor nusxani qaytarish farqi.
+// Ajratilgan xotirani ko'rish uchun: -Djmh.args="KeyboardFactory -prof gc" (gc.alloc.rate.norm)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyboardFactoryBenchmark {
+    // Ish kuni (dushanba), yarmi band: 8:00, 9:00, 10:00 ... slotlari
+    private final LocalDate day = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+    private long freeSlots;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.setUp();
+        KeyboardFactory.createMainMenu();
+        long bookedSlots = 0L;
+        for (int hour = 8; hour <= 18; hour++) {
+            bookedSlots = TimeSlots.set(bookedSlots, TimeSlots.slotOf(LocalTime.of(hour, 0)));
+        }
+        freeSlots = ClinicCalendar.getInstance().openSlots(day) & ~bookedSlots;
+    }
+
+    @Benchmark
+    public void staticMenusRebuilt(Blackhole bh) {
+        bh.consume(KeyboardFactory.buildAdminMenu());
+        bh.consume(KeyboardFactory.buildServiceManagementMenu());
+        bh.consume(KeyboardFactory.buildBackToMainKeyboard());
+        bh.consume(KeyboardFactory.buildStatsKeyboard());
+        bh.consume(KeyboardFactory.buildEmergencyKeyboard());
+        bh.consume(KeyboardFactory.buildSettingsKeyboard());
+        bh.consume(KeyboardFactory.buildContactKeyboard());
+    }
+
+    @Benchmark
+    public void staticMenusCached(Blackhole bh) {
+        bh.consume(KeyboardFactory.createAdminMenu());
+        bh.consume(KeyboardFactory.createServiceManagementMenu());
+        bh.consume(KeyboardFactory.createBackToMainKeyboard());
+        bh.consume(KeyboardFactory.createStatsKeyboard());
+        bh.consume(KeyboardFactory.createEmergencyKeyboard());
+        bh.consume(KeyboardFactory.createSettingsKeyboard());
+        bh.consume(KeyboardFactory.createContactKeyboard());
+    }
+
+    @Benchmark
+    public Object mainMenuRebuilt() {
+        return KeyboardFactory.buildMainMenu(ServiceCatalogCache.getInstance().snapshot().activeServices());
+    }
+
+    @Benchmark
+    public Object mainMenuCached() {
+        return KeyboardFactory.createMainMenu();
+    }
+
+    @Benchmark
+    public Object createTimesKeyboard() {
+        return KeyboardFactory.createTimesKeyboard(day, freeSlots);
+    }
+}
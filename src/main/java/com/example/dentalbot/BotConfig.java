@@ -1,6 +1,12 @@
 package com.example.dentalbot;
 
+import com.example.dentalbot.util.ClinicCalendar;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.MonthDay;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -8,6 +14,26 @@ public class BotConfig {
     public static final String BOT_USERNAME = "xujamovDc_bot";
     public static final String BOT_TOKEN = "8186277178:AAEgxZP5WlA1R4tIrQv6yyci1XppPmk9g7g";
 
+    // Webhook rejimi: -Ddentalbot.webhook.url=https://bot.example.uz berilsa long polling o'rniga
+    // ichki HTTP server WEBHOOK_PORT da WEBHOOK_PATH ga kelgan update'larni qabul qiladi
+    // (TLS va tashqi port - load balancer/reverse proxy'da). Bo'sh bo'lsa - long polling.
+    // Standart holatda faqat lokal interfeysda; proxy boshqa serverda bo'lsa -Ddentalbot.webhook.host=0.0.0.0
+    public static final String WEBHOOK_URL = System.getProperty("dentalbot.webhook.url", "");
+    public static final String WEBHOOK_HOST = System.getProperty("dentalbot.webhook.host", "127.0.0.1");
+    public static final int WEBHOOK_PORT = Integer.getInteger("dentalbot.webhook.port", 8080);
+    public static final String WEBHOOK_PATH = "/telegram/update";
+    // Telegram uni har so'rovda yuboradi, boshqa so'rovlar rad etiladi (1-256 belgi: A-Z a-z 0-9 _ -).
+    // Webhook rejimida majburiy: adminlik update ichidagi chat id bo'yicha, soxta update admin menyusini ochadi
+    public static final String WEBHOOK_SECRET = System.getProperty("dentalbot.webhook.secret", "");
+
+    // Prometheus metrikalari: http://METRICS_HOST:METRICS_PORT/metrics. Standart holatda faqat lokal
+    // (scraper shu serverda yoki tunnel orqali); 0 yoki manfiy port - o'chirilgan
+    public static final String METRICS_HOST = System.getProperty("dentalbot.metrics.host", "127.0.0.1");
+    public static final int METRICS_PORT = Integer.getInteger("dentalbot.metrics.port", 9464);
+    // Shundan uzoq davom etgan update (javob xabarlari yetib borguncha) span'lari bilan log'ga chiqariladi;
+    // 0 yoki manfiy - izlash o'chirilgan
+    public static final int TRACE_SLOW_MS = Integer.getInteger("dentalbot.trace.slow.ms", 2000);
+
 
     // Barcha adminlar ro'yxati
     public static final Set<Long> ADMIN_CHAT_IDS = Set.of(
@@ -17,6 +43,31 @@ public class BotConfig {
             7693708552L
     );
 
+    // Ish vaqti: birinchi qabul WORK_START da, oxirgisi WORK_END dan bir slot oldin boshlanadi
+    public static final LocalTime WORK_START = LocalTime.of(8, 0);
+    public static final LocalTime WORK_END = LocalTime.of(19, 0);
+    public static final Set<DayOfWeek> DAYS_OFF = Set.of(DayOfWeek.SUNDAY);
+
+    // Klinika resurslari (kreslo/shifokor): bir vaqtda nechta bemor qabul qilinishi shu ro'yxat uzunligi.
+    // id appointments.resource_id ga yoziladi - mavjud resursning id sini o'zgartirmang.
+    // Masalan: new ClinicCalendar.Resource(2, "2-kreslo", LocalTime.of(9, 0), LocalTime.of(17, 0), DAYS_OFF)
+    //         .withBreak(LocalTime.of(13, 0), LocalTime.of(14, 0))
+    public static final List<ClinicCalendar.Resource> RESOURCES = List.of(
+            new ClinicCalendar.Resource(1, "1-kreslo", WORK_START, WORK_END, DAYS_OFF)
+    );
+
+    // Har yili takrorlanadigan bayram kunlari - barcha resurslar uchun yopiq
+    public static final Set<MonthDay> HOLIDAYS = Set.of(
+            MonthDay.of(1, 1),
+            MonthDay.of(3, 21)
+    );
+
+    // Kun tanlash klaviaturasida ko'rsatiladigan kunlar
+    public static final int BOOKING_DAYS = 14;
+    // Band vaqt o'rniga taklif qilinadigan muqobil vaqtlar soni va qidiruv chuqurligi (kun)
+    public static final int ALTERNATIVE_SLOTS = 4;
+    public static final int SLOT_SEARCH_HORIZON_DAYS = 30;
+
     // Admin tekshirish metodi
     public static boolean isAdmin(Long chatId) {
         return ADMIN_CHAT_IDS.contains(chatId);
@@ -0,0 +1,199 @@
+package com.example.dentalbot;
+
+import com.example.dentalbot.util.CallbackData;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.Arrays;
+
+// Callback marshrutlash jadvali. Matnli amallar ("main_menu") va prefiksli amallar ("apl_") trie'da:
+// data bir marta belgima-belgi o'tiladi, to'liq mos amal yoki eng uzun mos prefiks olinadi.
+// "#" bilan boshlanadigan imzolangan payload'lar (CallbackData) tur bo'yicha massivdan topiladi.
+// Noma'lum, buzilgan yoki soxta ma'lumot uchun resolve() null qaytaradi - handler chaqirilmaydi.
+class CallbackRouter {
+    interface Handler {
+        void handle(long chatId, String argument) throws TelegramApiException;
+    }
+
+    // Faqat callback'ga javob beriladi, xabar o'zgarmaydi (yozuv tugmalari, hali ishlanmagan amallar)
+    static final Handler IGNORE = (chatId, argument) -> {
+    };
+
+    interface PayloadHandler {
+        void handle(long chatId, CallbackData payload) throws TelegramApiException;
+    }
+
+    // Callback javobi natijaga bog'liq (masalan, o'chirildi/topilmadi): matn ishlovdan keyin qaytariladi
+    interface AnsweringHandler {
+        String handle(long chatId, CallbackData payload) throws TelegramApiException;
+    }
+
+    // Topilgan marshrut. notice - callback javobida ko'rsatiladigan qisqa bildirishnoma (yoki null)
+    static final class Route {
+        private final String name;
+        private final String notice;
+        private final Handler handler;
+        private final String argument;
+        private final PayloadHandler payloadHandler;
+        private final AnsweringHandler answeringHandler;
+        private final CallbackData payload;
+
+        private Route(String name, String notice, Handler handler, String argument,
+                      PayloadHandler payloadHandler, AnsweringHandler answeringHandler, CallbackData payload) {
+            this.name = name;
+            this.notice = notice;
+            this.handler = handler;
+            this.argument = argument;
+            this.payloadHandler = payloadHandler;
+            this.answeringHandler = answeringHandler;
+            this.payload = payload;
+        }
+
+        // Ro'yxatdan o'tkazilgan kalit (amal, prefiks yoki payload turi) - metrika label'i uchun cheklangan qiymat
+        String name() {
+            return name;
+        }
+
+        String notice() {
+            return notice;
+        }
+
+        // true - callback'ga run() qaytargan matn bilan ishlovdan keyin javob beriladi
+        boolean answersAfterRun() {
+            return answeringHandler != null;
+        }
+
+        // AnsweringHandler javob matni, qolganlari uchun null
+        String run(long chatId) throws TelegramApiException {
+            if (answeringHandler != null) {
+                return answeringHandler.handle(chatId, payload);
+            }
+            if (payloadHandler != null) {
+                payloadHandler.handle(chatId, payload);
+            } else {
+                handler.handle(chatId, argument);
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final Handler handler;
+        final String notice;
+
+        Entry(String key, Handler handler, String notice) {
+            this.key = key;
+            this.handler = handler;
+            this.notice = notice;
+        }
+    }
+
+    // Farzandlar kam (bir necha harf) - kichik tartiblanmagan massivda chiziqli qidiruv
+    private static final class Node {
+        char[] chars = new char[0];
+        Node[] children = new Node[0];
+        Entry exact;
+        Entry prefix;
+
+        Node child(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char c) {
+            Node existing = child(c);
+            if (existing != null) {
+                return existing;
+            }
+            chars = Arrays.copyOf(chars, chars.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            chars[chars.length - 1] = c;
+            return children[children.length - 1] = new Node();
+        }
+    }
+
+    private final Node root = new Node();
+    private final PayloadHandler[] payloadHandlers = new PayloadHandler[CallbackData.Type.values().length];
+    private final AnsweringHandler[] answeringHandlers = new AnsweringHandler[CallbackData.Type.values().length];
+    private final String[] payloadNotices = new String[CallbackData.Type.values().length];
+    private final String[] payloadNames = new String[CallbackData.Type.values().length];
+
+    // Faqat to'liq mos kelganda; argument - bo'sh satr
+    CallbackRouter on(String action, Handler handler) {
+        return on(action, null, handler);
+    }
+
+    CallbackRouter on(String action, String notice, Handler handler) {
+        node(action).exact = new Entry(action, handler, notice);
+        return this;
+    }
+
+    // prefix bilan boshlanadigan har qanday data; argument - prefiksdan keyingi qism
+    CallbackRouter onPrefix(String prefix, Handler handler) {
+        node(prefix).prefix = new Entry(prefix, handler, null);
+        return this;
+    }
+
+    CallbackRouter on(CallbackData.Type type, PayloadHandler handler) {
+        return on(type, null, handler);
+    }
+
+    CallbackRouter on(CallbackData.Type type, String notice, PayloadHandler handler) {
+        payloadHandlers[type.ordinal()] = handler;
+        payloadNotices[type.ordinal()] = notice;
+        payloadNames[type.ordinal()] = "#" + type.name().toLowerCase();
+        return this;
+    }
+
+    CallbackRouter onAnswering(CallbackData.Type type, AnsweringHandler handler) {
+        answeringHandlers[type.ordinal()] = handler;
+        payloadNames[type.ordinal()] = "#" + type.name().toLowerCase();
+        return this;
+    }
+
+    Route resolve(String data) {
+        if (CallbackData.isPayload(data)) {
+            CallbackData payload = CallbackData.decode(data);
+            if (payload == null) {
+                return null;
+            }
+            int index = payload.type().ordinal();
+            PayloadHandler handler = payloadHandlers[index];
+            AnsweringHandler answering = answeringHandlers[index];
+            return handler == null && answering == null ? null
+                    : new Route(payloadNames[index], payloadNotices[index], null, null, handler, answering, payload);
+        }
+
+        Node node = root;
+        Entry prefix = null;
+        int prefixEnd = 0;
+        for (int i = 0; i < data.length() && node != null; i++) {
+            if (node.prefix != null) {
+                prefix = node.prefix;
+                prefixEnd = i;
+            }
+            node = node.child(data.charAt(i));
+        }
+        if (node != null && node.exact != null) {
+            return new Route(node.exact.key, node.exact.notice, node.exact.handler, "", null, null, null);
+        }
+        if (node != null && node.prefix != null) {
+            prefix = node.prefix;
+            prefixEnd = data.length();
+        }
+        return prefix == null ? null
+                : new Route(prefix.key, prefix.notice, prefix.handler, data.substring(prefixEnd), null, null, null);
+    }
+
+    private Node node(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+        }
+        return node;
+    }
+}
@@ -1,50 +1,98 @@
 package com.example.dentalbot;
 
+import com.example.dentalbot.db.AppointmentExporter;
 import com.example.dentalbot.db.AppointmentRepository;
+import com.example.dentalbot.db.ReminderScheduler;
+import com.example.dentalbot.UserState.AdminStage;
+import com.example.dentalbot.UserState.Stage;
 import com.example.dentalbot.db.ServiceRepository;
+import com.example.dentalbot.util.CallbackData;
 import com.example.dentalbot.util.KeyboardFactory;
 import com.example.dentalbot.util.MarkdownUtil;
+import com.example.dentalbot.util.Metrics;
+import com.example.dentalbot.util.TimeSlots;
+import com.example.dentalbot.util.Trace;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.*;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.bots.AbsSender;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.Serializable;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 public class DentalBot extends TelegramLongPollingBot {
+    private static final int UPDATE_THREADS = 16;
+    private static final int TELEGRAM_HTTP_THREADS = 8;
+    // Xizmat davomiyligi kun ichida bo'lishi kerak (ClinicCalendar slotlari kun oxirida tugaydi)
+    private static final int MAX_SERVICE_DURATION_MINUTES = 12 * 60;
+
     private final AppointmentRepository appointmentRepo = new AppointmentRepository();
     private final ServiceRepository serviceRepo = new ServiceRepository();
-    private final Map<Long, UserState> userStates = new HashMap<>();
-
-    private static class UserState {
-        String phone;
-        String fullname;
-        Integer serviceId;
-        String selectedTime;
-        Stage stage = Stage.NONE;
-        AdminStage adminStage = AdminStage.NONE;
-        String tempData;
-    }
+    private final UserStateStore userStates;
+    private final UpdateDispatcher dispatcher = new UpdateDispatcher(UPDATE_THREADS, this::processUpdate);
+    private final OutboundQueue outbound;
+    private final AppointmentExporter exporter = new AppointmentExporter();
+    // Fayli hali yuborilmagan eksporti bor chatlar: qayta bosish yangi eksport qo'ymaydi
+    private final Set<Long> exportsInProgress = ConcurrentHashMap.newKeySet();
+    // Bosilgan tugma turgan xabar: callback ishlanayotganda birinchi ekran yangi xabar o'rniga shu xabarni tahrirlaydi
+    private final ThreadLocal<Message> callbackMessage = new ThreadLocal<>();
+    private final CallbackRouter userCallbacks = buildUserCallbacks();
+    private final CallbackRouter adminCallbacks = buildAdminCallbacks();
+    // type: message/contact/callback; route: command/text yoki callback marshruti nomi
+    private final Metrics.HistogramFamily updateLatency = Metrics.getInstance().histogram(
+            "dentalbot_update_seconds", "Update ishlov berish vaqti (navbatda kutishsiz)", "type", "route");
 
-    private enum Stage {
-        NONE, WAITING_PHONE, WAITING_FULLNAME
+    public DentalBot() {
+        this(OutboundQueue::new, new SqliteUserStateStore());
     }
 
-    private enum AdminStage {
-        NONE, WAITING_SERVICE_NAME, WAITING_SERVICE_MIN_PRICE, WAITING_SERVICE_MAX_PRICE,
-        WAITING_EDIT_SERVICE_MIN_PRICE, WAITING_EDIT_SERVICE_MAX_PRICE
+    // Chiquvchi navbat va holatlar omborini almashtirish mumkin (masalan, benchmark'da limitlarsiz navbat)
+    DentalBot(Function<AbsSender, OutboundQueue> outboundFactory, UserStateStore userStates) {
+        super(createOptions(), BotConfig.BOT_TOKEN);
+        this.userStates = userStates;
+        this.outbound = outboundFactory.apply(this);
+        ReminderScheduler reminderScheduler = new ReminderScheduler(outbound);
+        appointmentRepo.addListener(reminderScheduler);
+        reminderScheduler.start();
+
+        Metrics metrics = Metrics.getInstance();
+        metrics.gauge("dentalbot_updates_pending", "Navbatda turgan yoki ishlanayotgan update'lar", dispatcher::pending);
+        metrics.gauge("dentalbot_outbound_depth", "Yuborilishini kutayotgan chiquvchi so'rovlar", outbound::depth);
+        metrics.gauge("dentalbot_reminders_pending", "Rejalashtirilgan eslatmalar", reminderScheduler::pending);
+        metrics.gauge("dentalbot_user_sessions", "Xotiradagi faol suhbat holatlari", userStates::size);
+        if (userStates instanceof SqliteUserStateStore store) {
+            metrics.gauge("dentalbot_user_state_cache_entries", "Keshdagi suhbat yozuvlari (holati yo'q chatlar ham)",
+                    store::cachedEntries);
+            metrics.counter("dentalbot_user_state_evicted_total", "LRU bo'yicha keshdan siqib chiqarilgan holatlar",
+                    store::evictedCount);
+            metrics.counter("dentalbot_user_state_expired_total", "Bo'sh turgani uchun xotiradan chiqarilgan holatlar",
+                    store::expiredCount);
+            metrics.counter("dentalbot_user_state_purged_total", "Tashlab ketilgani uchun bazadan o'chirilgan holatlar",
+                    store::purgedCount);
+        }
     }
 
-    public DentalBot() {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(() -> appointmentRepo.checkAndSendReminders(this), 0, 30, TimeUnit.MINUTES);
+    // executeAsync shu pool'da ishlaydi; standart 1 ta oqim OutboundQueue uchun yetarli emas
+    private static DefaultBotOptions createOptions() {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setMaxThreads(TELEGRAM_HTTP_THREADS);
+        return options;
     }
 
     @Override
@@ -59,19 +107,46 @@ public class DentalBot extends TelegramLongPollingBot {
 
     @Override
     public void onUpdateReceived(Update update) {
+        // Long polling oqimini bloklamaslik uchun ishlov berish ishchi oqimlarda
+        dispatcher.dispatch(update);
+    }
+
+    // Navbatda turgan yoki ishlanayotgan update'lar va yuborilmagan xabarlar soni
+    int pendingWork() {
+        return dispatcher.pending() + outbound.depth();
+    }
+
+    void processUpdate(Update update) {
+        long started = System.nanoTime();
+        String type = "other";
+        String route = "";
         try {
             if (update.hasMessage() && update.getMessage().hasText()) {
+                type = "message";
+                route = update.getMessage().getText().startsWith("/") ? "command" : "text";
                 handleMessage(update.getMessage());
             } else if (update.hasMessage() && update.getMessage().hasContact()) {
+                type = "contact";
                 handleContact(update.getMessage());
             } else if (update.hasCallbackQuery()) {
-                handleCallback(update.getCallbackQuery());
+                type = "callback";
+                CallbackQuery query = update.getCallbackQuery();
+                CallbackRouter.Route callbackRoute = resolveCallback(query);
+                route = callbackRoute != null ? callbackRoute.name() : "unknown";
+                handleCallback(query, callbackRoute);
             }
         } catch (Exception e) {
             e.printStackTrace();
             if (update.hasMessage()) {
                 sendPlain(update.getMessage().getChatId(), "❌ Texnik xatolik yuz berdi. Iltimos keyinroq urinib ko'ring.");
             }
+        } finally {
+            updateLatency.labels(type, route).observeSince(started);
+            Trace trace = Trace.current();
+            if (trace != null) {
+                trace.record("handler", started, System.nanoTime());
+                trace.rename(type + " " + route + " (chat " + UpdateDispatcher.chatIdOf(update) + ")");
+            }
         }
     }
 
@@ -112,6 +187,11 @@ public class DentalBot extends TelegramLongPollingBot {
                     showStatistics(chatId);
                 }
                 break;
+            case "/export":
+                if (BotConfig.isAdmin(chatId)) {
+                    exportAppointments(chatId, AppointmentRepository.AppointmentFilter.all().encode());
+                }
+                break;
             case "/my_appointments":
                 showUserAppointments(chatId);
                 break;
@@ -133,12 +213,7 @@ public class DentalBot extends TelegramLongPollingBot {
 
         SendMessage sendMessage = new SendMessage(String.valueOf(chatId), message);
         sendMessage.setParseMode(ParseMode.MARKDOWN);
-
-        try {
-            execute(sendMessage);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        executeSilently(sendMessage);
     }
 
     private void handleContact(Message message) {
@@ -211,12 +286,29 @@ public class DentalBot extends TelegramLongPollingBot {
             case WAITING_SERVICE_MAX_PRICE:
                 try {
                     int maxPrice = Integer.parseInt(text.trim());
+                    state.tempData = state.tempData + "|" + maxPrice; // name|minPrice|maxPrice formatida
+                    state.adminStage = AdminStage.WAITING_SERVICE_DURATION;
+                    userStates.put(chatId, state);
+                    sendPlain(chatId, "✅ Maksimal narx qabul qilindi.\n\nEndi xizmat DAVOMIYLIGINI kiriting (daqiqada, masalan 30, 60, 90):");
+                } catch (NumberFormatException e) {
+                    sendPlain(chatId, "❌ Noto'g'ri narx formati! Faqat raqam kiriting:");
+                }
+                break;
+
+            case WAITING_SERVICE_DURATION:
+                try {
+                    int durationMinutes = Integer.parseInt(text.trim());
+                    if (durationMinutes <= 0 || durationMinutes > MAX_SERVICE_DURATION_MINUTES) {
+                        sendPlain(chatId, "❌ Davomiylik 1 dan " + MAX_SERVICE_DURATION_MINUTES + " daqiqagacha bo'lishi kerak:");
+                        break;
+                    }
                     String[] parts = state.tempData.split("\\|");
                     String serviceName = parts[0];
                     int minPrice = Integer.parseInt(parts[1]);
+                    int maxPrice = Integer.parseInt(parts[2]);
 
-                    if (serviceRepo.addService(serviceName, minPrice, maxPrice)) {
-                        sendPlain(chatId, "✅ Xizmat muvaffaqiyatli qo'shildi: " + serviceName + " - " + minPrice + " - " + maxPrice + " so'm");
+                    if (serviceRepo.addService(serviceName, minPrice, maxPrice, durationMinutes)) {
+                        sendPlain(chatId, "✅ Xizmat muvaffaqiyatli qo'shildi: " + serviceName + " - " + minPrice + " - " + maxPrice + " so'm, " + durationMinutes + " daqiqa");
                     } else {
                         sendPlain(chatId, "❌ Xizmat qo'shishda xatolik!");
                     }
@@ -227,7 +319,7 @@ public class DentalBot extends TelegramLongPollingBot {
                     showServiceManagementMenu(chatId);
 
                 } catch (NumberFormatException e) {
-                    sendPlain(chatId, "❌ Noto'g'ri narx formati! Faqat raqam kiriting:");
+                    sendPlain(chatId, "❌ Noto'g'ri format! Davomiylikni daqiqada, faqat raqam bilan kiriting:");
                 } catch (TelegramApiException e) {
                     throw new RuntimeException(e);
                 }
@@ -273,110 +365,215 @@ public class DentalBot extends TelegramLongPollingBot {
         }
     }
 
-    private void handleCallback(CallbackQuery query) throws TelegramApiException {
+    // Admin marshrutlari ustun; topilmasa null
+    private CallbackRouter.Route resolveCallback(CallbackQuery query) {
+        String data = query.getData();
+        if (data == null) {
+            return null;
+        }
+        CallbackRouter.Route route = null;
+        if (BotConfig.isAdmin(query.getMessage().getChatId())) {
+            route = adminCallbacks.resolve(data);
+        }
+        return route != null ? route : userCallbacks.resolve(data);
+    }
+
+    private void handleCallback(CallbackQuery query, CallbackRouter.Route route) throws TelegramApiException {
         long chatId = query.getMessage().getChatId();
         String data = query.getData();
 
+        // Javob darhol: mijozda tugmadagi soat belgisi ishlov tugashini kutmaydi.
+        // Natijani bildiradigan marshrutlar (bekor qilish) ishlovdan keyin javob beradi
+        boolean answerAfter = route != null && route.answersAfterRun();
+        if (!answerAfter) {
+            answerCallback(query, route != null ? route.notice() : null);
+        }
+
         if (data == null) return;
 
-        System.out.println("Callback received: " + data);
+        callbackMessage.set(query.getMessage());
+        String notice = null;
+        try {
+            if (route != null) {
+                notice = route.run(chatId);
+            } else {
+                // Eski formatdagi, buzilgan yoki soxta tugma - eskirgan klaviatura o'rniga asosiy menyu
+                // (amalsiz tugmalar CallbackRouter.IGNORE bilan ro'yxatda - ular bu yerga tushmaydi).
+                // Soni dentalbot_update_seconds{route="unknown"} da
+                showMainMenu(chatId);
+            }
+        } finally {
+            callbackMessage.remove();
+            // Xatolikda ham javob beriladi, aks holda tugmadagi soat belgisi qolib ketadi
+            if (answerAfter) {
+                answerCallback(query, notice);
+            }
+        }
+    }
+
+    private void answerCallback(CallbackQuery query, String text) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery(query.getId());
+        answer.setText(text);
+        outbound.answer(answer);
+    }
+
+    private CallbackRouter buildUserCallbacks() {
+        return new CallbackRouter()
+                .on("main_menu", (chatId, arg) -> showMainMenu(chatId))
+                .on("doctor_menu", (chatId, arg) -> sendDoctorInfo(chatId))
+                .on("my_appointments", (chatId, arg) -> showUserAppointments(chatId))
+                .on("change_service", (chatId, arg) -> showMainMenu(chatId))
+                .on("reject_time", "✅ Navbat band qilish bekor qilindi.", (chatId, arg) -> showMainMenu(chatId))
+                .on("change_time", (chatId, arg) -> showDays(chatId))
+                .on("change_day", (chatId, arg) -> showDays(chatId))
+                .on("no_time", CallbackRouter.IGNORE)
+                .on("no_time_available", CallbackRouter.IGNORE)
+                .on("location_info", CallbackRouter.IGNORE)
+                .on("contact_info", CallbackRouter.IGNORE)
+                .on("emergency_help", CallbackRouter.IGNORE)
+                .on("call_doctor", CallbackRouter.IGNORE)
+                .on("show_location", CallbackRouter.IGNORE)
+                .on("notification_settings", CallbackRouter.IGNORE)
+                .on("language_settings", CallbackRouter.IGNORE)
+                .on("profile_info", CallbackRouter.IGNORE)
+                .on(CallbackData.Type.SERVICE, (chatId, payload) -> handleServiceSelection(chatId, payload.id()))
+                .on(CallbackData.Type.QUEUE_REGISTER, (chatId, payload) -> startQueueRegistration(chatId, payload.id()))
+                .on(CallbackData.Type.SHOW_DAY, (chatId, payload) -> showTimesForDay(chatId, payload.day()))
+                .on(CallbackData.Type.SELECT_TIME, (chatId, payload) ->
+                        handleTimeSelection(chatId, TimeSlots.format(payload.time())))
+                .on(CallbackData.Type.CONFIRM_TIME, (chatId, payload) ->
+                        confirmAppointment(chatId, TimeSlots.format(payload.time())))
+                .onAnswering(CallbackData.Type.CANCEL, (chatId, payload) -> cancelAppointment(chatId, payload.id()));
+    }
+
+    // Faqat BotConfig.isAdmin chatlar uchun; mos kelmasa foydalanuvchi marshrutlari tekshiriladi
+    private CallbackRouter buildAdminCallbacks() {
+        return new CallbackRouter()
+                .on("admin_menu", (chatId, arg) -> showAdminMenu(chatId))
+                .on("admin_stats", (chatId, arg) -> showStatistics(chatId))
+                .on("daily_stats", (chatId, arg) -> showDailyStatistics(chatId))
+                .on("weekly_stats", (chatId, arg) -> showWeeklyStatistics(chatId))
+                .on("monthly_stats", (chatId, arg) -> showMonthlyStatistics(chatId))
+                .on("manage_services", (chatId, arg) -> showServiceManagementMenu(chatId))
+                .on("add_service", (chatId, arg) -> startAddService(chatId))
+                .on("edit_services", (chatId, arg) -> showServicesForEdit(chatId))
+                .on("all_appointments", (chatId, arg) ->
+                        showAppointmentsPage(chatId, "f_" + AppointmentRepository.AppointmentFilter.upcoming().encode()))
+                .onPrefix("apl_", this::showAppointmentsPage)
+                .onPrefix("apx_", this::exportAppointments)
+                .onPrefix("delete_service_", CallbackRouter.IGNORE)
+                .onPrefix("confirm_appointment_", CallbackRouter.IGNORE)
+                .onPrefix("cancel_appointment_", CallbackRouter.IGNORE)
+                .onPrefix("reschedule_", CallbackRouter.IGNORE)
+                .on(CallbackData.Type.STATS_MONTH, (chatId, payload) -> showMonthStatistics(chatId, payload.month()))
+                .on(CallbackData.Type.EDIT_SERVICE, (chatId, payload) -> startEditService(chatId, payload.id()));
+    }
+
+    private void showDays(long chatId) {
+        SendMessage msg = new SendMessage(String.valueOf(chatId),
+                "*📅 Navbat uchun kun tanlang \\(keyingi 14 kun\\)*:");
+        msg.enableMarkdownV2(true);
+        msg.setReplyMarkup(KeyboardFactory.createDaysKeyboard());
+        executeSilently(msg);
+    }
+
+    private void startAddService(long chatId) {
+        UserState state = userStates.getOrDefault(chatId, new UserState());
+        state.adminStage = AdminStage.WAITING_SERVICE_NAME;
+        userStates.put(chatId, state);
+        sendPlain(chatId, "Yangi xizmat nomini kiriting:");
+    }
+
+    private void startEditService(long chatId, int serviceId) {
+        UserState state = userStates.getOrDefault(chatId, new UserState());
+        state.adminStage = AdminStage.WAITING_EDIT_SERVICE_MIN_PRICE;
+        state.tempData = String.valueOf(serviceId);
+        userStates.put(chatId, state);
 
-        if (BotConfig.isAdmin(chatId)) {
-            if (handleAdminCallback(chatId, data)) return;
+        var service = serviceRepo.getServiceById(serviceId);
+        if (service != null) {
+            sendPlain(chatId, "Xizmat: " + service.getName() + "\nJoriy narx oralig'i: " + service.getPriceRange() + "\n\nYangi MINIMAL narxni kiriting:");
         }
+    }
 
-        switch (data) {
-            case "main_menu":
-                showMainMenu(chatId);
-                break;
-            case "doctor_menu":
-                sendDoctorInfo(chatId);
-                break;
-            case "my_appointments":
-                showUserAppointments(chatId);
-                break;
-            case "change_service":
-                showMainMenu(chatId);
-                break;
-            case "reject_time":
-                sendPlain(chatId, "✅ Navbat band qilish bekor qilindi.");
+    // apl_f_<filtr> - birinchi sahifa; apl_n_<filtr>_<start>_<id> / apl_p_... - keyingi/oldingi sahifa.
+    // argument - "apl_" dan keyingi qism (router prefiksni olib tashlaydi).
+    // Buzilgan yoki o'zgartirilgan argument boshqa noto'g'ri callback'lar kabi asosiy menyuga qaytaradi
+    private void showAppointmentsPage(long chatId, String argument) throws TelegramApiException {
+        String[] parts = argument.split("_", -1);
+        var filter = parts.length == 2 || parts.length == 4
+                ? AppointmentRepository.AppointmentFilter.decode(parts[1]) : null;
+        if (filter == null) {
+            showMainMenu(chatId);
+            return;
+        }
+
+        long start = 0;
+        int id = 0;
+        if (parts.length == 4) {
+            try {
+                start = Long.parseLong(parts[2]);
+                id = Integer.parseInt(parts[3]);
+            } catch (NumberFormatException e) {
                 showMainMenu(chatId);
-                break;
-            case "change_time":
-            case "change_day":
-                SendMessage msg = new SendMessage(String.valueOf(chatId),
-                        "*📅 Navbat uchun kun tanlang \\(keyingi 14 kun\\)*:");
-                msg.enableMarkdownV2(true);
-                msg.setReplyMarkup(KeyboardFactory.createDaysKeyboard());
-                executeSilently(msg);
-                break;
-            default:
-                if (data.startsWith("service_")) {
-                    int serviceId = Integer.parseInt(data.substring("service_".length()));
-                    handleServiceSelection(chatId, serviceId);
-                } else if (data.startsWith("queue_register_")) {
-                    int serviceId = Integer.parseInt(data.substring("queue_register_".length()));
-                    startQueueRegistration(chatId, serviceId);
-                } else if (data.startsWith("show_day_")) {
-                    String date = data.substring("show_day_".length());
-                    showTimesForDay(chatId, date);
-                } else if (data.startsWith("select_time_")) {
-                    String time = data.substring("select_time_".length());
-                    handleTimeSelection(chatId, time);
-                } else if (data.startsWith("confirm_time_")) {
-                    String time = data.substring("confirm_time_".length());
-                    confirmAppointment(chatId, time);
-                } else if (data.startsWith("cancel_")) {
-                    int appointmentId = Integer.parseInt(data.substring("cancel_".length()));
-                    cancelAppointment(chatId, appointmentId);
-                }
+                return;
+            }
         }
-    }
 
-    private boolean handleAdminCallback(long chatId, String data) throws TelegramApiException {
-        if (!BotConfig.isAdmin(chatId)) {
-            return false;
+        AppointmentRepository.AppointmentPage page;
+        if (parts[0].equals("f") && parts.length == 2) {
+            page = appointmentRepo.getAppointmentsPage(filter);
+        } else if (parts[0].equals("n") && parts.length == 4) {
+            page = appointmentRepo.getAppointmentsPageAfter(filter, start, id);
+        } else if (parts[0].equals("p") && parts.length == 4) {
+            page = appointmentRepo.getAppointmentsPageBefore(filter, start, id);
+        } else {
+            showMainMenu(chatId);
+            return;
         }
 
-        UserState state = userStates.getOrDefault(chatId, new UserState());
+        String title = "📋 " + filter.describe();
+        var service = filter.getServiceId() != 0 ? serviceRepo.getServiceById(filter.getServiceId()) : null;
+        if (service != null) {
+            title += " (" + service.getName() + ")";
+        }
 
-        switch (data) {
-            case "admin_menu":
-                showAdminMenu(chatId);
-                return true;
-            case "admin_stats":
-                showStatistics(chatId);
-                return true;
-            case "manage_services":
-                showServiceManagementMenu(chatId);
-                return true;
-            case "add_service":
-                state.adminStage = AdminStage.WAITING_SERVICE_NAME;
-                userStates.put(chatId, state);
-                sendPlain(chatId, "Yangi xizmat nomini kiriting:");
-                return true;
-            case "edit_services":
-                showServicesForEdit(chatId);
-                return true;
-            case "all_appointments":
-                String appointments = appointmentRepo.getAllAppointments();
-                sendPlain(chatId, appointments.isEmpty() ? "Hozircha navbatlar yo'q." : appointments);
-                return true;
-            default:
-                if (data.startsWith("edit_service_")) {
-                    int serviceId = Integer.parseInt(data.substring("edit_service_".length()));
-                    state.adminStage = AdminStage.WAITING_EDIT_SERVICE_MIN_PRICE;
-                    state.tempData = String.valueOf(serviceId);
-                    userStates.put(chatId, state);
+        SendMessage msg = new SendMessage(String.valueOf(chatId),
+                title + ":\n\n" + (page.getSize() == 0 ? "Navbatlar topilmadi." : page.getText()));
+        msg.setReplyMarkup(KeyboardFactory.createAppointmentsPageKeyboard(filter, page));
+        executeSilently(msg);
+    }
 
-                    var service = serviceRepo.getServiceById(serviceId);
-                    if (service != null) {
-                        sendPlain(chatId, "Xizmat: " + service.getName() + "\nJoriy narx oralig'i: " + service.getPriceRange() + "\n\nYangi MINIMAL narxni kiriting:");
-                    }
-                    return true;
-                }
+    // Fayl eksport oqimida tayyorlanadi, OutboundQueue orqali yuboriladi va keyin o'chiriladi
+    private void exportAppointments(long chatId, String filterCode) {
+        var filter = AppointmentRepository.AppointmentFilter.decode(filterCode);
+        if (filter == null) {
+            sendPlain(chatId, "❌ Eksport qilishda xatolik yuz berdi.");
+            return;
+        }
+        if (!exportsInProgress.add(chatId)) {
+            sendPlain(chatId, "⏳ Oldingi eksport hali tayyorlanmoqda, fayl tez orada yuboriladi.");
+            return;
         }
-        return false;
+        sendPlain(chatId, "⏳ Excel fayl tayyorlanmoqda...");
+
+        exporter.exportAsync(filter)
+                .thenCompose(file -> {
+                    SendDocument document = new SendDocument(String.valueOf(chatId),
+                            new InputFile(file, "navbatlar_" + LocalDate.now() + ".xlsx"));
+                    document.setCaption("📥 " + filter.describe());
+                    return outbound.send(chatId, document).whenComplete((result, error) -> file.delete());
+                })
+                .whenComplete((result, error) -> exportsInProgress.remove(chatId))
+                .exceptionally(error -> {
+                    if (error.getCause() instanceof RejectedExecutionException) {
+                        sendPlain(chatId, "⏳ Hozir boshqa eksportlar tayyorlanmoqda, birozdan keyin urinib ko'ring.");
+                        return null;
+                    }
+                    error.printStackTrace();
+                    sendPlain(chatId, "❌ Eksport qilishda xatolik yuz berdi.");
+                    return null;
+                });
     }
 
     private void handleServiceSelection(long chatId, int serviceId) throws TelegramApiException {
@@ -428,15 +625,19 @@ public class DentalBot extends TelegramLongPollingBot {
         executeSilently(msg);
     }
 
-    private void showTimesForDay(long chatId, String date) throws TelegramApiException {
-        LocalDate localDate = LocalDate.parse(date);
+    private void showTimesForDay(long chatId, LocalDate localDate) throws TelegramApiException {
+        UserState state = userStates.get(chatId);
+        if (state == null || state.serviceId == null) {
+            sendPlain(chatId, "❌ Xatolik! Avval xizmat tanlang.");
+            return;
+        }
 
         // Oddiy tekst sifatida yuboramiz (Markdown ishlatmasdan)
-        String displayDate = date.replace("-", ".");
+        String displayDate = localDate.toString().replace("-", ".");
 
         SendMessage msg = new SendMessage(String.valueOf(chatId),
                 "⏰ Bo'sh vaqtlar (" + displayDate + "):");
-        msg.setReplyMarkup(KeyboardFactory.createTimesKeyboard(localDate, appointmentRepo::isTimeBooked));
+        msg.setReplyMarkup(KeyboardFactory.createTimesKeyboard(localDate, appointmentRepo.getFreeSlots(localDate, state.serviceId)));
         executeSilently(msg);
     }
 
@@ -453,10 +654,13 @@ public class DentalBot extends TelegramLongPollingBot {
         var service = serviceRepo.getServiceById(state.serviceId);
         String serviceName = service != null ? service.getName() : "Noma'lum";
 
+        String duration = service != null ? "⏱ Davomiyligi: " + service.getDurationMinutes() + " daqiqa\n" : "";
+
         SendMessage msg = new SendMessage(String.valueOf(chatId),
                 "❓ Navbatni tasdiqlaysizmi? \n\n" +
                         "🕒 Vaqt: " + time + "\n" +
-                        "🛠 Xizmat: " + serviceName + "\n\n" +
+                        "🛠 Xizmat: " + serviceName + "\n" +
+                        duration + "\n" +
                         "Shu vaqtga yozilasizmi?");
         msg.setReplyMarkup(KeyboardFactory.createConfirmationKeyboard(time));
         executeSilently(msg);
@@ -469,20 +673,21 @@ public class DentalBot extends TelegramLongPollingBot {
             return;
         }
 
-        if (appointmentRepo.isTimeBooked(time)) {
-            String nextTime = appointmentRepo.findNextAvailableTime(time);
-            if (nextTime != null) {
-                sendPlain(chatId, "❌ Afsus, bu vaqt allaqachon band.\n\n" +
-                        "📅 Taklif etamiz: " + nextTime + "\n\n" +
-                        "Bu vaqtga yozilishni xohlaysizmi?");
-
-                state.selectedTime = nextTime;
-                userStates.put(chatId, state);
+        AppointmentRepository.Reservation reservation;
+        try {
+            reservation = appointmentRepo.reserveSlot(chatId, time, state.phone, state.fullname, state.serviceId);
+        } catch (Exception e) {
+            sendPlain(chatId, "❌ Navbat saqlashda xatolik: " + e.getMessage());
+            return;
+        }
 
+        if (reservation.getStatus() == AppointmentRepository.Reservation.Status.TAKEN) {
+            List<String> alternatives = reservation.getAlternatives();
+            if (!alternatives.isEmpty()) {
                 SendMessage msg = new SendMessage(String.valueOf(chatId),
-                        "❓ Taklif qilingan vaqtga yozilasizmi?\n\n" +
-                                "🕒 Vaqt: " + nextTime);
-                msg.setReplyMarkup(KeyboardFactory.createConfirmationKeyboard(nextTime));
+                        "❌ Afsus, bu vaqt allaqachon band.\n\n" +
+                                "📅 Eng yaqin bo'sh vaqtlar - birini tanlang:");
+                msg.setReplyMarkup(KeyboardFactory.createAlternativeTimesKeyboard(alternatives));
                 executeSilently(msg);
             } else {
                 sendPlain(chatId, "❌ Afsus, bu vaqt allaqachon band. Keyinroq urinib ko'ring.");
@@ -490,68 +695,51 @@ public class DentalBot extends TelegramLongPollingBot {
             return;
         }
 
-        try {
-            appointmentRepo.saveAppointment(chatId, time, state.phone, state.fullname, state.serviceId);
-
-            var service = serviceRepo.getServiceById(state.serviceId);
-            StringBuilder sb = new StringBuilder();
-            sb.append("✅ Navbatingiz muvaffaqiyatli saqlandi! \n\n");
-            sb.append("👤 Ism: ").append(state.fullname).append("\n");
-            sb.append("📞 Telefon: ").append(state.phone).append("\n");
-            sb.append("🛠 Xizmat: ").append(service.getName()).append("\n");
-            sb.append("💰 Narx oralig'i: ").append(service.getPriceRange()).append("\n");
-            sb.append("🕒 Vaqt: ").append(time).append("\n\n");
-            sb.append("📍 Manzil: Samarqand, Urgut tumani, Qora tepa \n");
-            sb.append("📞 Telefon: +998 90 123 45 67 \n\n");
-            sb.append("⏰ Eslatmalar avtomatik yuboriladi.\n");
-            sb.append("📋 /my_appointments - Navbatlaringizni ko'rish");
-
-            sendPlain(chatId, sb.toString());
-            userStates.remove(chatId);
-
-        } catch (Exception e) {
-            sendPlain(chatId, "❌ Navbat saqlashda xatolik: " + e.getMessage());
-        }
+        var service = serviceRepo.getServiceById(state.serviceId);
+        StringBuilder sb = new StringBuilder();
+        sb.append("✅ Navbatingiz muvaffaqiyatli saqlandi! \n\n");
+        sb.append("👤 Ism: ").append(state.fullname).append("\n");
+        sb.append("📞 Telefon: ").append(state.phone).append("\n");
+        sb.append("🛠 Xizmat: ").append(service.getName()).append("\n");
+        sb.append("💰 Narx oralig'i: ").append(service.getPriceRange()).append("\n");
+        sb.append("🕒 Vaqt: ").append(time).append("\n\n");
+        sb.append("📍 Manzil: Samarqand, Urgut tumani, Qora tepa \n");
+        sb.append("📞 Telefon: +998 90 123 45 67 \n\n");
+        sb.append("⏰ Eslatmalar avtomatik yuboriladi.\n");
+        sb.append("📋 /my_appointments - Navbatlaringizni ko'rish");
+
+        sendPlain(chatId, sb.toString());
+        userStates.remove(chatId);
     }
 
+    // Matn ham, bekor qilish tugmalari ham bitta (keshlangan) ro'yxatdan
     private void showUserAppointments(long chatId) {
-        String appointments = appointmentRepo.getUserAppointments(chatId);
-        SendMessage msg = new SendMessage(String.valueOf(chatId), appointments);
-
-        var appointmentsList = appointmentRepo.getUserAppointmentsList(chatId);
-        if (!appointmentsList.isEmpty()) {
-            var markup = new org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup();
-            var rows = new ArrayList<List<org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton>>();
-
-            for (var appointment : appointmentsList) {
-                var row = new ArrayList<org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton>();
-                var button = new org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton();
-                button.setText("❌ Bekor qilish: " + appointment.getServiceName() + " - " + appointment.getAppointmentTime());
-                button.setCallbackData("cancel_" + appointment.getId());
-                row.add(button);
-                rows.add(row);
-            }
-
-            var backRow = new ArrayList<org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton>();
-            var backButton = new org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton();
-            backButton.setText("🔙 Asosiy menyu");
-            backButton.setCallbackData("main_menu");
-            backRow.add(backButton);
-            rows.add(backRow);
+        var appointments = appointmentRepo.getUserAppointmentsList(chatId);
 
-            markup.setKeyboard(rows);
-            msg.setReplyMarkup(markup);
+        StringBuilder sb = new StringBuilder();
+        if (appointments.isEmpty()) {
+            sb.append("Hozircha navbatlaringiz yo'q.");
         } else {
-            msg.setReplyMarkup(KeyboardFactory.createBackToMainKeyboard());
+            sb.append("Sizning navbatlaringiz:\n\n");
+            for (var appointment : appointments) {
+                sb.append("🆔 ID: ").append(appointment.getId())
+                        .append("\n🛠 Xizmat: ").append(appointment.getServiceName())
+                        .append("\n🕒 Vaqt: ").append(appointment.getAppointmentTime())
+                        .append("\n━━━━━━━━━━━━━━━━━━━━\n");
+            }
         }
 
+        SendMessage msg = new SendMessage(String.valueOf(chatId), sb.toString());
+        msg.setReplyMarkup(KeyboardFactory.createUserAppointmentsKeyboard(appointments));
         executeSilently(msg);
     }
 
-    private void cancelAppointment(long chatId, int appointmentId) {
-        appointmentRepo.deleteAppointment(appointmentId);
-        sendPlain(chatId, "✅ Navbat bekor qilindi.");
+    // Natija callback javobida, ro'yxat shu xabarning o'rnida yangilanadi.
+    // Boshqa chatning navbati o'chirilmaydi; ikki marta bosilganda ikkinchisi "topilmadi"
+    private String cancelAppointment(long chatId, int appointmentId) {
+        boolean deleted = appointmentRepo.deleteUserAppointment(chatId, appointmentId);
         showUserAppointments(chatId);
+        return deleted ? "✅ Navbat bekor qilindi." : "⚠️ Navbat topilmadi yoki allaqachon bekor qilingan.";
     }
 
     private void showMainMenu(long chatId) throws TelegramApiException {
@@ -580,39 +768,100 @@ public class DentalBot extends TelegramLongPollingBot {
     }
 
     private void showStatistics(long chatId) {
-        String stats = appointmentRepo.getServiceStatistics();
-        int monthlyCount = appointmentRepo.getMonthlyAppointmentCount(2024, 1);
+        showMonthStatistics(chatId, YearMonth.now());
+    }
 
-        String message = "📊 **Statistika** \n\n" +
-                "📈 Oyilik navbatlar: " + monthlyCount + " ta\n\n" +
-                stats +
+    // Hisoblagichlar xotirada, shuning uchun istalgan oy darhol ko'rsatiladi
+    private void showMonthStatistics(long chatId, YearMonth month) {
+        int monthlyCount = appointmentRepo.getMonthlyAppointmentCount(month.getYear(), month.getMonthValue());
+
+        String message = "📊 Statistika: " + month + "\n\n" +
+                "📈 Oylik navbatlar: " + monthlyCount + " ta\n\n" +
+                appointmentRepo.getServiceStatistics(month) +
                 "\n━━━━━━━━━━━━━━━━━━━━\n" +
-                "ℹ️ Statistika har 30 daqiqa yangilanadi";
+                "ℹ️ Statistika har bir yozilish va bekor qilishda yangilanadi";
 
         SendMessage msg = new SendMessage(String.valueOf(chatId), message);
-        msg.enableMarkdownV2(true);
+        msg.setReplyMarkup(KeyboardFactory.createMonthStatsKeyboard(month));
+        executeSilently(msg);
+    }
+
+    // Bugundan oldingi 7 va keyingi 7 kun
+    private void showDailyStatistics(long chatId) {
+        LocalDate from = LocalDate.now().minusDays(7);
+        int[] counts = appointmentRepo.getDailyAppointmentCounts(from, from.plusDays(15));
+        int max = Arrays.stream(counts).max().orElse(0);
+
+        StringBuilder sb = new StringBuilder("📈 Kunlik statistika:\n\n");
+        for (int i = 0; i < counts.length; i++) {
+            sb.append(trendLine(from.plusDays(i).format(DateTimeFormatter.ofPattern("dd.MM")), counts[i], max));
+        }
+        sendStatistics(chatId, sb.toString());
+    }
+
+    // Joriy haftadan oldingi 4 va keyingi 3 hafta (dushanbadan boshlab)
+    private void showWeeklyStatistics(long chatId) {
+        LocalDate firstWeek = LocalDate.now().with(DayOfWeek.MONDAY).minusWeeks(4);
+        int[] counts = new int[8];
+        for (int i = 0; i < counts.length; i++) {
+            LocalDate weekStart = firstWeek.plusWeeks(i);
+            counts[i] = appointmentRepo.getAppointmentCount(weekStart, weekStart.plusWeeks(1));
+        }
+        int max = Arrays.stream(counts).max().orElse(0);
+
+        StringBuilder sb = new StringBuilder("📊 Haftalik statistika:\n\n");
+        for (int i = 0; i < counts.length; i++) {
+            sb.append(trendLine(firstWeek.plusWeeks(i).format(DateTimeFormatter.ofPattern("dd.MM")), counts[i], max));
+        }
+        sendStatistics(chatId, sb.toString());
+    }
+
+    // Oxirgi 12 oy (keyingi oy bilan birga - oldindan yozilganlar)
+    private void showMonthlyStatistics(long chatId) {
+        YearMonth firstMonth = YearMonth.now().minusMonths(10);
+        int[] counts = new int[12];
+        for (int i = 0; i < counts.length; i++) {
+            YearMonth month = firstMonth.plusMonths(i);
+            counts[i] = appointmentRepo.getMonthlyAppointmentCount(month.getYear(), month.getMonthValue());
+        }
+        int max = Arrays.stream(counts).max().orElse(0);
+
+        StringBuilder sb = new StringBuilder("📅 Oylik statistika:\n\n");
+        for (int i = 0; i < counts.length; i++) {
+            sb.append(trendLine(firstMonth.plusMonths(i).toString(), counts[i], max));
+        }
+        sendStatistics(chatId, sb.toString());
+    }
+
+    private String trendLine(String label, int count, int max) {
+        int width = max == 0 ? 0 : (int) Math.ceil(count * 10.0 / max);
+        return label + "  " + "▇".repeat(width) + " " + count + "\n";
+    }
+
+    private void sendStatistics(long chatId, String text) {
+        SendMessage msg = new SendMessage(String.valueOf(chatId), text);
+        msg.setReplyMarkup(KeyboardFactory.createStatsKeyboard());
         executeSilently(msg);
     }
 
     private void sendDoctorInfo(long chatId) {
-        try {
-            String info = "👨‍⚕️ *Doktor Xujamov Shaxzod* \n\n" +
-                    "🎓 *Ta'lim:* Kiev Xalqaro tibbiyot universiteti va Samarqand Davlat Tibbiyot universiteti\n" +
-                    "📅 *Tajriba:* 7\\+ yil\n" +
-                    "🦷 *Mutaxassislik:* Stomatolog\n" +
-                    "🏥 *Ish joyi:* Samarqand, Urgut tumani, Qora tepa\n" +
-                    "📞 *Aloqa:* \\+998 91 034 33 55 \n\n" +
-                    "⏰ *Ish vaqti:* 8:00 \\- 19:00 \n" +
-                    "📅 *Dam olish:* Yakshanba \n\n";
-
-            SendMessage msg = new SendMessage(String.valueOf(chatId), info);
-            msg.enableMarkdownV2(true);
-            msg.setReplyMarkup(KeyboardFactory.createBackToMainKeyboard());
-            execute(msg);
-        } catch (Exception e) {
-            e.printStackTrace();
+        String info = "👨‍⚕️ *Doktor Xujamov Shaxzod* \n\n" +
+                "🎓 *Ta'lim:* Kiev Xalqaro tibbiyot universiteti va Samarqand Davlat Tibbiyot universiteti\n" +
+                "📅 *Tajriba:* 7\\+ yil\n" +
+                "🦷 *Mutaxassislik:* Stomatolog\n" +
+                "🏥 *Ish joyi:* Samarqand, Urgut tumani, Qora tepa\n" +
+                "📞 *Aloqa:* \\+998 91 034 33 55 \n\n" +
+                "⏰ *Ish vaqti:* 8:00 \\- 19:00 \n" +
+                "📅 *Dam olish:* Yakshanba \n\n";
+
+        SendMessage msg = new SendMessage(String.valueOf(chatId), info);
+        msg.enableMarkdownV2(true);
+        msg.setReplyMarkup(KeyboardFactory.createBackToMainKeyboard());
+        // Masalan, MarkdownV2 rad etilsa - oddiy matnli xabar
+        executeSilently(msg).exceptionally(error -> {
             sendPlain(chatId, "❌ Ma'lumot yuborishda xatolik yuz berdi.");
-        }
+            return null;
+        });
     }
 
     private boolean isValidPhone(String phone) {
@@ -621,18 +870,34 @@ public class DentalBot extends TelegramLongPollingBot {
     }
 
     private void sendPlain(long chatId, String text) {
-        try {
-            execute(new SendMessage(String.valueOf(chatId), text));
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        outbound.send(chatId, new SendMessage(String.valueOf(chatId), text));
     }
 
-    private void executeSilently(SendMessage msg) {
-        try {
-            execute(msg);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
+    // Xabar OutboundQueue orqali yuboriladi; xatolik navbatning o'zida log qilinadi.
+    // Callback ichida birinchi ekran bosilgan tugma turgan xabarni tahrirlaydi (chatda eski klaviaturalar
+    // to'planmaydi); tahrirlab bo'lmasa (eski yoki matnsiz xabar, oddiy klaviatura) - yangi xabar.
+    // Future xabar ko'rsatilganda yakunlanadi, tahrir ham, yangi xabar ham o'tmasa - xato bilan
+    private CompletableFuture<Serializable> executeSilently(SendMessage msg) {
+        long chatId = Long.parseLong(msg.getChatId());
+        Message origin = callbackMessage.get();
+        if (origin == null || !origin.hasText()
+                || (msg.getReplyMarkup() != null && !(msg.getReplyMarkup() instanceof InlineKeyboardMarkup))) {
+            return outbound.send(chatId, msg);
         }
+
+        callbackMessage.remove();
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(msg.getChatId());
+        edit.setMessageId(origin.getMessageId());
+        edit.setText(msg.getText());
+        edit.setParseMode(msg.getParseMode());
+        edit.setEntities(msg.getEntities());
+        edit.setDisableWebPagePreview(msg.getDisableWebPagePreview());
+        edit.setReplyMarkup((InlineKeyboardMarkup) msg.getReplyMarkup());
+        return outbound.send(chatId, edit)
+                .handle((result, error) -> error == null || OutboundQueue.isNotModified(error)
+                        ? CompletableFuture.completedFuture(result)
+                        : outbound.send(chatId, msg))
+                .thenCompose(Function.identity());
     }
 }
\ No newline at end of file
@@ -1,19 +1,57 @@
 package com.example.dentalbot;
 
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import java.io.IOException;
+import java.util.List;
+
 public class Main {
     public static void main(String[] args) {
+        // Secret'siz webhook portiga kira olgan har kim istalgan chat (admin ham) nomidan update yubora oladi
+        if (!BotConfig.WEBHOOK_URL.isEmpty() && BotConfig.WEBHOOK_SECRET.isEmpty()) {
+            System.err.println("Webhook rejimi uchun dentalbot.webhook.secret berilishi shart - bot ishga tushirilmadi");
+            return;
+        }
         try {
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class); // Debug mode
-            botsApi.registerBot(new DentalBot());
+            DentalBot bot = new DentalBot();
+            startMetrics();
+            if (BotConfig.WEBHOOK_URL.isEmpty()) {
+                TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class); // Debug mode
+                botsApi.registerBot(bot);
+            } else {
+                startWebhook(bot);
+            }
             System.out.println("Bot ishga tushdi...");
-        } catch (TelegramApiException e) {
+        } catch (TelegramApiException | IOException e) {
             e.printStackTrace();
         }
     }
 
+    private static void startMetrics() throws IOException {
+        if (BotConfig.METRICS_PORT <= 0) {
+            return;
+        }
+        MetricsServer server = new MetricsServer(BotConfig.METRICS_HOST, BotConfig.METRICS_PORT);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "metrics-stop"));
+        System.out.println("Metrikalar: http://" + BotConfig.METRICS_HOST + ":" + server.port() + MetricsServer.PATH);
+    }
+
+    // Update'lar long polling'dagi kabi bot.onUpdateReceived -> UpdateDispatcher yo'lidan o'tadi
+    private static void startWebhook(DentalBot bot) throws IOException, TelegramApiException {
+        WebhookServer server = new WebhookServer(BotConfig.WEBHOOK_HOST, BotConfig.WEBHOOK_PORT, BotConfig.WEBHOOK_PATH,
+                BotConfig.WEBHOOK_SECRET, bot::onUpdateReceived);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "webhook-stop"));
 
-}
\ No newline at end of file
+        SetWebhook setWebhook = new SetWebhook(BotConfig.WEBHOOK_URL + BotConfig.WEBHOOK_PATH);
+        // Bot faqat shu turdagi update'larga ishlov beradi - qolganlari yuborilmasin
+        setWebhook.setAllowedUpdates(List.of("message", "callback_query"));
+        setWebhook.setSecretToken(BotConfig.WEBHOOK_SECRET);
+        bot.execute(setWebhook);
+        System.out.println("Webhook: " + setWebhook.getUrl() + " (port " + server.port() + ")");
+    }
+}
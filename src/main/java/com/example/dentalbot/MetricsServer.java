@@ -0,0 +1,59 @@
+package com.example.dentalbot;
+
+import com.example.dentalbot.util.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// GET /metrics - Metrics qiymatlari Prometheus matn formatida. Scrape bir necha soniyada bir marta,
+// shuning uchun bitta oqim yetarli; bot ishchi oqimlariga ta'sir qilmaydi.
+public class MetricsServer {
+    public static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            UpdateDispatcher.namedThreads("metrics-http-"));
+
+    public MetricsServer(String host, int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.getInstance().scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
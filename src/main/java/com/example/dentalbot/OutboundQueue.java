@@ -0,0 +1,312 @@
+package com.example.dentalbot;
+
+import com.example.dentalbot.util.Metrics;
+import com.example.dentalbot.util.TokenBucket;
+import com.example.dentalbot.util.Trace;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Telegramga chiquvchi xabarlar navbati. Barcha yuborishlar shu yerdan o'tadi:
+// - umumiy limit (~30 xabar/sek) va har bir chat uchun limit token bucket bilan;
+// - bitta chat xabarlari tartib bilan, oldingisi yetib borgandan keyin yuboriladi;
+// - 429 (Too Many Requests) javobida retry_after kutilib qayta yuboriladi;
+// - haqiqiy HTTP so'rovlar AbsSender.executeAsync orqali, chaqiruvchi oqim bloklanmaydi.
+public class OutboundQueue {
+    private static final double GLOBAL_PER_SECOND = 30;
+    private static final double PER_CHAT_PER_SECOND = 1;
+    private static final double PER_CHAT_BURST = 3;
+    private static final int MAX_RETRIES = 3;
+    private static final long IDLE_SWEEP_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private interface ApiCall {
+        CompletableFuture<? extends Serializable> start() throws Exception;
+    }
+
+    private static class Outgoing {
+        final String method;
+        final ApiCall call;
+        final CompletableFuture<Serializable> result = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+        // Yuborgan update izi: javob kelguncha ochiq turadi
+        final Trace trace = Trace.current();
+        int attempts;
+
+        Outgoing(String method, ApiCall call) {
+            this.method = method;
+            this.call = call;
+            if (trace != null) {
+                trace.retain();
+            }
+        }
+    }
+
+    // Bitta chatning navbati. Barcha o'zgarishlar chats.compute() ichida (kalit bo'yicha qulf).
+    private static class ChatQueue implements Delayed {
+        final long chatId;
+        final ArrayDeque<Outgoing> items = new ArrayDeque<>();
+        final TokenBucket bucket;
+        volatile long notBefore;
+        boolean scheduled;
+        boolean inFlight;
+
+        ChatQueue(long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(notBefore - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(notBefore, ((ChatQueue) other).notBefore);
+        }
+    }
+
+    private final AbsSender sender;
+    private final TokenBucket global;
+    private final double perChatPerSecond;
+    private final double perChatBurst;
+    private final ConcurrentHashMap<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatQueue> ready = new DelayQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Thread worker;
+    // Telegram API javobigacha (method, outcome: ok/retry/error) va navbatda kutish (method)
+    private final Metrics.HistogramFamily callLatency = Metrics.getInstance().histogram(
+            "dentalbot_telegram_call_seconds", "Telegram API so'rovi vaqti", "method", "outcome");
+    private final Metrics.HistogramFamily queueWait = Metrics.getInstance().histogram(
+            "dentalbot_outbound_wait_seconds", "Chiquvchi so'rovning birinchi yuborilishigacha navbatda kutishi", "method");
+
+    public OutboundQueue(AbsSender sender) {
+        this(sender, GLOBAL_PER_SECOND, PER_CHAT_PER_SECOND, PER_CHAT_BURST);
+    }
+
+    // Limitlarni almashtirish uchun (benchmark'larda Telegram limitlari o'lchovga xalaqit bermasligi uchun)
+    OutboundQueue(AbsSender sender, double globalPerSecond, double perChatPerSecond, double perChatBurst) {
+        this.sender = sender;
+        this.global = new TokenBucket(globalPerSecond, globalPerSecond);
+        this.perChatPerSecond = perChatPerSecond;
+        this.perChatBurst = perChatBurst;
+        this.worker = new Thread(this::run, "outbound-queue");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public <T extends Serializable> CompletableFuture<Serializable> send(long chatId, BotApiMethod<T> method) {
+        return enqueue(chatId, new Outgoing(method.getMethod(), () -> sender.executeAsync(method)));
+    }
+
+    public CompletableFuture<Serializable> send(long chatId, SendDocument document) {
+        return enqueue(chatId, new Outgoing(SendDocument.PATH, () -> sender.executeAsync(document)));
+    }
+
+    // Callback javobi xabar emas (chat limitlariga kirmaydi) va mijozdagi soat belgisi tezroq yo'qolishi
+    // uchun chat navbatini kutmasdan darhol yuboriladi
+    public void answer(AnswerCallbackQuery answer) {
+        long started = System.nanoTime();
+        Trace trace = Trace.current();
+        if (trace != null) {
+            trace.retain();
+        }
+        try {
+            sender.executeAsync(answer).whenComplete((result, error) -> {
+                callLatency.labels(answer.getMethod(), error == null ? "ok" : "error").observeSince(started);
+                if (trace != null) {
+                    trace.record("tg " + answer.getMethod(), started, System.nanoTime());
+                    trace.release();
+                }
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            });
+        } catch (TelegramApiException e) {
+            e.printStackTrace();
+            if (trace != null) {
+                trace.release();
+            }
+        }
+    }
+
+    // Tahrir qilingan xabar mazmuni o'zgarmagan (masalan, o'sha tugma qayta bosilgan) - xato emas
+    public static boolean isNotModified(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof TelegramApiRequestException
+                && ((TelegramApiRequestException) cause).getApiResponse() != null
+                && ((TelegramApiRequestException) cause).getApiResponse().contains("message is not modified");
+    }
+
+    // Navbatda turgan va yuborilayotgan xabarlar soni
+    public int depth() {
+        return depth.get();
+    }
+
+    public void shutdown() {
+        worker.interrupt();
+    }
+
+    private CompletableFuture<Serializable> enqueue(long chatId, Outgoing item) {
+        depth.incrementAndGet();
+        chats.compute(chatId, (id, chat) -> {
+            if (chat == null) {
+                chat = new ChatQueue(id, new TokenBucket(perChatPerSecond, perChatBurst));
+            }
+            chat.items.addLast(item);
+            if (!chat.inFlight && !chat.scheduled) {
+                chat.scheduled = true;
+                chat.notBefore = System.nanoTime();
+                ready.add(chat);
+            }
+            return chat;
+        });
+        return item.result;
+    }
+
+    private void run() {
+        long nextSweep = System.nanoTime() + IDLE_SWEEP_NANOS;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ChatQueue chat = ready.poll(1, TimeUnit.SECONDS);
+                if (System.nanoTime() > nextSweep) {
+                    sweepIdleChats();
+                    nextSweep = System.nanoTime() + IDLE_SWEEP_NANOS;
+                }
+                if (chat == null) {
+                    continue;
+                }
+
+                // Chat limiti tugagan bo'lsa boshqa chatlarni to'xtatmasdan keyinroqqa qoldiramiz
+                long chatWait = chat.bucket.nanosUntilAvailable();
+                if (chatWait > 0) {
+                    chat.notBefore = System.nanoTime() + chatWait;
+                    ready.add(chat);
+                    continue;
+                }
+
+                long globalWait;
+                while ((globalWait = global.nanosUntilAvailable()) > 0) {
+                    LockSupport.parkNanos(globalWait);
+                }
+                global.tryAcquire();
+                chat.bucket.tryAcquire();
+
+                Outgoing[] next = new Outgoing[1];
+                chats.computeIfPresent(chat.chatId, (id, c) -> {
+                    c.scheduled = false;
+                    next[0] = c.items.pollFirst();
+                    c.inFlight = next[0] != null;
+                    return c;
+                });
+                if (next[0] != null) {
+                    execute(chat, next[0]);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void execute(ChatQueue chat, Outgoing item) {
+        long started = System.nanoTime();
+        if (item.attempts == 0) {
+            queueWait.labels(item.method).observe(started - item.enqueuedAt);
+            if (item.trace != null) {
+                item.trace.record("tg " + item.method + " navbatda", item.enqueuedAt, started);
+            }
+        }
+        CompletableFuture<? extends Serializable> call;
+        try {
+            call = item.call.start();
+        } catch (Exception e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((result, error) -> completed(chat, item, result, error, started));
+    }
+
+    private void completed(ChatQueue chat, Outgoing item, Serializable result, Throwable error, long started) {
+        Integer retryAfter = retryAfter(error);
+        boolean retry = retryAfter != null && ++item.attempts <= MAX_RETRIES;
+        callLatency.labels(item.method, error == null ? "ok" : retryAfter != null ? "retry" : "error")
+                .observeSince(started);
+        if (item.trace != null) {
+            item.trace.record("tg " + item.method + (retry ? " (429)" : ""), started, System.nanoTime());
+        }
+
+        chats.compute(chat.chatId, (id, c) -> {
+            if (c == null) {
+                c = chat;
+            }
+            c.inFlight = false;
+            if (retry) {
+                c.items.addFirst(item);
+            }
+            if (!c.items.isEmpty() && !c.scheduled) {
+                c.scheduled = true;
+                c.notBefore = System.nanoTime() + (retry ? TimeUnit.SECONDS.toNanos(retryAfter) : 0);
+                ready.add(c);
+            }
+            return c;
+        });
+
+        if (retry) {
+            return;
+        }
+        depth.decrementAndGet();
+        // Natijaga ulangan davomlar (masalan, tahrir o'xshamasa yangi xabar) ham shu izga yoziladi
+        Trace previous = Trace.current();
+        Trace.attach(item.trace);
+        try {
+            if (error != null) {
+                if (!isNotModified(error)) {
+                    error.printStackTrace();
+                }
+                item.result.completeExceptionally(error);
+            } else {
+                item.result.complete(result);
+            }
+        } finally {
+            Trace.attach(previous);
+            if (item.trace != null) {
+                item.trace.release();
+            }
+        }
+    }
+
+    // Bo'sh va limiti to'lgan chatlarni xaritadan chiqarish
+    private void sweepIdleChats() {
+        for (Long chatId : chats.keySet()) {
+            chats.computeIfPresent(chatId, (id, c) ->
+                    c.items.isEmpty() && !c.inFlight && !c.scheduled && c.bucket.isFull() ? null : c);
+        }
+    }
+
+    private static Integer retryAfter(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TelegramApiRequestException) {
+            TelegramApiRequestException requestError = (TelegramApiRequestException) cause;
+            if (requestError.getErrorCode() != null && requestError.getErrorCode() == 429) {
+                var parameters = requestError.getParameters();
+                return parameters != null && parameters.getRetryAfter() != null ? parameters.getRetryAfter() : 1;
+            }
+        }
+        return null;
+    }
+}
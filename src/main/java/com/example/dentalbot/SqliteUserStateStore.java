@@ -0,0 +1,335 @@
+package com.example.dentalbot;
+
+import com.example.dentalbot.db.DatabaseManager;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Suhbat holatlari: xotirada chegaralangan LRU kesh + SQLite user_states jadvali.
+// put/remove chaqiruvchi oqimda holatni JSON'ga aylantirib navbatga qo'yadi xolos; "user-state-writer"
+// oqimi har FLUSH_INTERVAL_MS da to'plangan o'zgarishlarni bitta tranzaksiyada yozadi (bir chat uchun
+// faqat oxirgisi). Keshdan chiqarilgan holat kerak bo'lsa bazadan qayta o'qiladi.
+// Ishga tushganda oxirgi o'zgargan holatlar keshga yuklanadi - deploy'dan keyin yarim qolgan suhbatlar davom etadi.
+// Xotira ikki tomondan chegaralangan: MAX_CACHED dan oshsa eng eski ishlatilgani siqib chiqariladi (LRU),
+// MEMORY_IDLE_TTL davomida murojaat bo'lmagan yozuvlarni sweeper olib tashlaydi. Bazadagi holat
+// STATE_TTL davomida o'zgarmasa suhbat tashlab ketilgan hisoblanadi va o'chiriladi.
+class SqliteUserStateStore implements UserStateStore {
+    private static final int MAX_CACHED = 10_000;
+    private static final long FLUSH_INTERVAL_MS = 200;
+    private static final long SWEEP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MEMORY_IDLE_TTL_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long STATE_TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+    // pending'da o'chirish belgisi
+    private static final String DELETED = "";
+    private static final Gson GSON = new Gson();
+
+    // Kesh yozuvi. state == null - "bazada ham yo'q" belgisi: holatsiz chatlar uchun har safar
+    // bazaga murojaat qilmaslik uchun
+    private static class Session {
+        final UserState state;
+        long lastAccess;
+
+        Session(UserState state, long lastAccess) {
+            this.state = state;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    // Murojaat tartibida: birinchi yozuv eng uzoq ishlatilmagani (sweeper shundan boshlaydi)
+    private final LinkedHashMap<Long, Session> cache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Session> eldest) {
+            if (size() <= MAX_CACHED) {
+                return false;
+            }
+            evicted++;
+            if (eldest.getValue().state != null) {
+                live--;
+            }
+            return true;
+        }
+    };
+    private final Map<Long, String> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-state-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Metrikalar (cache lock ostida): keshdagi haqiqiy holatlar soni va boshidan beri chiqarilganlar
+    private int live;
+    private long evicted;
+    private long expired;
+    private long purged;
+    private long loggedEvicted;
+    private long loggedExpired;
+
+    SqliteUserStateStore() {
+        restore();
+        writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        writer.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        // Oddiy to'xtatishda (SIGTERM) kutilayotgan yozuvlar yo'qolmasligi uchun
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "user-state-flush"));
+    }
+
+    @Override
+    public UserState get(long chatId) {
+        synchronized (cache) {
+            Session cached = cache.get(chatId);
+            if (cached != null) {
+                cached.lastAccess = System.currentTimeMillis();
+                return cached.state;
+            }
+        }
+
+        UserState loaded = load(chatId);
+        synchronized (cache) {
+            // O'qish paytida put() bo'lgan bo'lsa o'sha ustun
+            Session cached = cache.get(chatId);
+            if (cached != null) {
+                return cached.state;
+            }
+            cachePut(chatId, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void put(long chatId, UserState state) {
+        String json = GSON.toJson(state);
+        synchronized (cache) {
+            cachePut(chatId, state);
+        }
+        pending.put(chatId, json);
+    }
+
+    @Override
+    public void remove(long chatId) {
+        synchronized (cache) {
+            cachePut(chatId, null);
+        }
+        pending.put(chatId, DELETED);
+    }
+
+    // Xotiradagi faol suhbatlar soni ("yo'q" belgilari hisoblanmaydi)
+    @Override
+    public int size() {
+        synchronized (cache) {
+            return live;
+        }
+    }
+
+    // Keshdagi barcha yozuvlar, "yo'q" belgilari bilan (MAX_CACHED gacha)
+    int cachedEntries() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // LRU bo'yicha siqib chiqarilganlar soni
+    long evictedCount() {
+        synchronized (cache) {
+            return evicted;
+        }
+    }
+
+    // Bo'sh turgani uchun xotiradan chiqarilganlar soni
+    long expiredCount() {
+        synchronized (cache) {
+            return expired;
+        }
+    }
+
+    // Tashlab ketilgani uchun bazadan o'chirilgan holatlar soni
+    long purgedCount() {
+        synchronized (cache) {
+            return purged;
+        }
+    }
+
+    private void cachePut(long chatId, UserState state) {
+        Session previous = cache.put(chatId, new Session(state, System.currentTimeMillis()));
+        if (previous != null && previous.state != null) {
+            live--;
+        }
+        if (state != null) {
+            live++;
+        }
+    }
+
+    // Eng uzoq ishlatilmaganidan boshlab muddati o'tganlarni chiqaradi; birinchi yangi yozuvda to'xtaydi.
+    // Holatlar bazada qoladi - suhbat qaytsa load() orqali tiklanadi
+    void sweep() {
+        long cutoff = System.currentTimeMillis() - MEMORY_IDLE_TTL_MS;
+        int removed = 0;
+        synchronized (cache) {
+            Iterator<Session> sessions = cache.values().iterator();
+            while (sessions.hasNext()) {
+                Session session = sessions.next();
+                if (session.lastAccess >= cutoff) {
+                    break;
+                }
+                sessions.remove();
+                removed++;
+                if (session.state != null) {
+                    live--;
+                }
+            }
+            expired += removed;
+        }
+
+        int deleted = purgeAbandoned();
+        synchronized (cache) {
+            purged += deleted;
+            if (evicted != loggedEvicted || expired != loggedExpired || deleted > 0) {
+                System.out.println("Suhbat holatlari: " + live + " ta faol, " + cache.size() + " ta keshda, " +
+                        (expired - loggedExpired) + " ta muddati o'tdi, " + (evicted - loggedEvicted) +
+                        " ta siqib chiqarildi, bazadan " + deleted + " ta o'chirildi");
+                loggedEvicted = evicted;
+                loggedExpired = expired;
+            }
+        }
+    }
+
+    private int purgeAbandoned() {
+        String sql = "DELETE FROM user_states WHERE updated_at < ?";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, stateCutoff());
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    private static long stateCutoff() {
+        return System.currentTimeMillis() / 1000 - STATE_TTL_SECONDS;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Yozuvlar commit'gacha pending'da qoladi: shu orada keshdan chiqqan chat uchun load()
+        // bazadagi eski holatni emas, navbatdagisini oladi
+        Map<Long, String> batch = new LinkedHashMap<>(pending);
+
+        String upsertSql = "INSERT INTO user_states (chat_id, state, updated_at) VALUES (?, ?, ?) " +
+                "ON CONFLICT(chat_id) DO UPDATE SET state = excluded.state, updated_at = excluded.updated_at";
+        String deleteSql = "DELETE FROM user_states WHERE chat_id = ?";
+        long now = System.currentTimeMillis() / 1000;
+
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement upsert = conn.prepareStatement(upsertSql);
+                 PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+                for (Map.Entry<Long, String> entry : batch.entrySet()) {
+                    if (entry.getValue().equals(DELETED)) {
+                        delete.setLong(1, entry.getKey());
+                        delete.addBatch();
+                    } else {
+                        upsert.setLong(1, entry.getKey());
+                        upsert.setString(2, entry.getValue());
+                        upsert.setLong(3, now);
+                        upsert.addBatch();
+                    }
+                }
+                try {
+                    upsert.executeBatch();
+                    delete.executeBatch();
+                } catch (SQLException e) {
+                    // Eski DELETE keyingi flush'da yangi upsert'dan keyin ishlab, uni o'chirib yubormasin
+                    upsert.clearBatch();
+                    delete.clearBatch();
+                    throw e;
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // pending'da qolgan - keyingi urinishda qayta yoziladi
+            return;
+        }
+        // Shu orada yangiroq qiymat kelgan bo'lsa u navbatda qoladi
+        batch.forEach(pending::remove);
+    }
+
+    private UserState load(long chatId) {
+        String queued = pending.get(chatId);
+        if (queued != null) {
+            return queued.equals(DELETED) ? null : decode(chatId, queued);
+        }
+
+        String sql = "SELECT state FROM user_states WHERE chat_id = ? AND updated_at >= ?";
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, chatId);
+            pstmt.setLong(2, stateCutoff());
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? decode(chatId, rs.getString("state")) : null;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Eng so'nggi MAX_CACHED ta holat keshga, eskisidan yangisiga (LRU tartibi saqlanadi)
+    private void restore() {
+        String sql = "SELECT chat_id, state FROM " +
+                "(SELECT chat_id, state, updated_at FROM user_states WHERE updated_at >= ? " +
+                "ORDER BY updated_at DESC LIMIT ?) " +
+                "ORDER BY updated_at";
+
+        int restored = 0;
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, stateCutoff());
+            pstmt.setInt(2, MAX_CACHED);
+            ResultSet rs = pstmt.executeQuery();
+            synchronized (cache) {
+                while (rs.next()) {
+                    long chatId = rs.getLong("chat_id");
+                    UserState state = decode(chatId, rs.getString("state"));
+                    if (state != null) {
+                        cachePut(chatId, state);
+                        restored++;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        if (restored > 0) {
+            System.out.println(restored + " ta suhbat holati tiklandi");
+        }
+    }
+
+    // Buzilgan yoki eski formatdagi yozuv suhbatni boshidan boshlatadi
+    private static UserState decode(long chatId, String json) {
+        try {
+            return GSON.fromJson(json, UserState.class);
+        } catch (JsonParseException e) {
+            System.err.println("Suhbat holatini o'qib bo'lmadi (" + chatId + "): " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.dentalbot;
+
+import com.example.dentalbot.util.Metrics;
+import com.example.dentalbot.util.Trace;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Update'larni ishchi oqimlar pool'iga taqsimlaydi. Turli chatlar parallel ishlanadi,
+// bitta chat (chatId) ichidagi update'lar esa kelgan tartibda, birin-ketin ishlanadi.
+public class UpdateDispatcher {
+    private final ExecutorService workers;
+    private final Consumer<Update> handler;
+    // Har bir chat uchun oxirgi navbatdagi vazifa; keyingi update shu vazifadan keyin ishlaydi
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    // Kelgandan ishchi oqim olguncha (shu chatning oldingi update'larini kutish ham kiradi)
+    private final Metrics.Histogram queueWait = Metrics.getInstance().histogram(
+            "dentalbot_update_wait_seconds", "Update'ning ishlov boshlanguncha navbatda kutishi").labels();
+
+    public UpdateDispatcher(int threads, Consumer<Update> handler) {
+        this.handler = handler;
+        this.workers = Executors.newFixedThreadPool(threads, namedThreads("update-worker-"));
+    }
+
+    public void dispatch(Update update) {
+        Long chatId = chatIdOf(update);
+        pending.incrementAndGet();
+        Trace trace = Trace.begin("update");
+        long queuedAt = System.nanoTime();
+        Runnable task = () -> run(update, queuedAt, trace);
+
+        if (chatId == null) {
+            workers.execute(task);
+            return;
+        }
+
+        CompletableFuture<Void> next = tails.compute(chatId, (id, tail) -> tail == null
+                ? CompletableFuture.runAsync(task, workers)
+                : tail.thenRunAsync(task, workers));
+        // Chat navbati bo'shasa xaritadan olib tashlanadi, aks holda xarita cheksiz o'sadi
+        next.whenComplete((ignored, error) -> tails.remove(chatId, next));
+    }
+
+    // Hali ishlanmagan (navbatda turgan yoki ishlanayotgan) update'lar soni
+    public int pending() {
+        return pending.get();
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private void run(Update update, long queuedAt, Trace trace) {
+        queueWait.observeSince(queuedAt);
+        if (trace != null) {
+            trace.record("navbat", queuedAt, System.nanoTime());
+            Trace.attach(trace);
+        }
+        try {
+            handler.accept(update);
+        } catch (Exception e) {
+            // Bitta update xatoligi shu chatning keyingi update'larini to'xtatmasligi kerak
+            e.printStackTrace();
+        } finally {
+            pending.decrementAndGet();
+            if (trace != null) {
+                Trace.attach(null);
+                trace.release();
+            }
+        }
+    }
+
+    static Long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            var query = update.getCallbackQuery();
+            return query.getMessage() != null ? query.getMessage().getChatId() : query.getFrom().getId();
+        }
+        return null;
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
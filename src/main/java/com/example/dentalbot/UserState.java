@@ -0,0 +1,22 @@
+package com.example.dentalbot;
+
+// Foydalanuvchi/admin suhbatining joriy bosqichi va yig'ilgan ma'lumotlari.
+// UserStateStore orqali saqlanadi (Gson JSON, null maydonlar yozilmaydi)
+class UserState {
+    String phone;
+    String fullname;
+    Integer serviceId;
+    String selectedTime;
+    Stage stage = Stage.NONE;
+    AdminStage adminStage = AdminStage.NONE;
+    String tempData;
+
+    enum Stage {
+        NONE, WAITING_PHONE, WAITING_FULLNAME
+    }
+
+    enum AdminStage {
+        NONE, WAITING_SERVICE_NAME, WAITING_SERVICE_MIN_PRICE, WAITING_SERVICE_MAX_PRICE, WAITING_SERVICE_DURATION,
+        WAITING_EDIT_SERVICE_MIN_PRICE, WAITING_EDIT_SERVICE_MAX_PRICE
+    }
+}
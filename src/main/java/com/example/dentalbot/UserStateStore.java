@@ -0,0 +1,22 @@
+package com.example.dentalbot;
+
+// Suhbat holatlari ombori. DentalBot holatni o'zgartirgandan keyin put() chaqiradi -
+// put() chaqirilmagan o'zgarishlar saqlanishi kafolatlanmaydi
+interface UserStateStore {
+    UserState get(long chatId);
+
+    default UserState getOrDefault(long chatId, UserState defaultState) {
+        UserState state = get(chatId);
+        return state != null ? state : defaultState;
+    }
+
+    void put(long chatId, UserState state);
+
+    void remove(long chatId);
+
+    // Xotirada turgan holatlar soni
+    int size();
+
+    // Kutilayotgan yozuvlarni bazaga yozish
+    void flush();
+}
@@ -0,0 +1,107 @@
+package com.example.dentalbot;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Webhook rejimi: Telegram update'larni POST qilib yuboradi, long polling so'rovlari yo'q.
+// JDK HttpServer (qo'shimcha kutubxonasiz). Handler faqat JSON'ni Update'ga aylantirib
+// UpdateDispatcher navbatiga qo'yadi va darhol 200 qaytaradi - ishlov berish ishchi oqimlarda.
+// Testda ham shu portga tayyor Update JSON yuborish mumkin.
+public class WebhookServer {
+    // Telegram setWebhook(secret_token) da berilgan qiymatni har so'rovda shu sarlavhada yuboradi
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int HTTP_THREADS = 4;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(HTTP_THREADS,
+            UpdateDispatcher.namedThreads("webhook-http-"));
+    private final Consumer<Update> handler;
+    private final byte[] secret;
+
+    public WebhookServer(String host, int port, String path, String secret, Consumer<Update> handler) throws IOException {
+        if (secret.isEmpty()) {
+            throw new IllegalArgumentException("Webhook secret bo'sh bo'lmasligi kerak");
+        }
+        this.handler = handler;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext(path, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Haqiqiy port (0 berilgan bo'lsa tizim tanlagan port)
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reject(exchange, 405);
+                return;
+            }
+            if (!authorized(exchange.getRequestHeaders().getFirst(SECRET_HEADER))) {
+                reject(exchange, 401);
+                return;
+            }
+
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (body.length > MAX_BODY_BYTES) {
+                reject(exchange, 413);
+                return;
+            }
+
+            Update update;
+            try {
+                update = mapper.readValue(body, Update.class);
+            } catch (IOException e) {
+                System.err.println("Webhook: update'ni o'qib bo'lmadi: " + e.getMessage());
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            handler.accept(update);
+            exchange.sendResponseHeaders(200, -1);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Tana o'qilmagan - ulanish keyingi so'rov uchun ishlatilmasin
+    private static void reject(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private boolean authorized(String token) {
+        // Doimiy vaqtli taqqoslash
+        return token != null && MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8));
+    }
+}
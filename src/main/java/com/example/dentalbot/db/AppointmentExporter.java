@@ -0,0 +1,190 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.util.TimeSlots;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Navbatlarni .xlsx faylga eksport qilish. Qatorlar (start_minute, id) bo'yicha PAGE_SIZE talik sahifalab
+// o'qiladi: o'quvchi ulanish faqat sahifa o'qilguncha band, SXSSFWorkbook'ga yozish (diskka tushirish ham)
+// ulanish pool'ga qaytgandan keyin. Xotirada bitta sahifa va oxirgi ROW_WINDOW qator turadi.
+// Eksport alohida oqimda bajariladi, update'larga ishlov berish kutib qolmaydi.
+public class AppointmentExporter {
+    private static final int ROW_WINDOW = 100;
+    private static final int PAGE_SIZE = 500;
+    // Navbatda kutishi mumkin bo'lgan eksportlar; to'lsa exportAsync RejectedExecutionException bilan tugaydi
+    private static final int MAX_QUEUED = 4;
+    private static final String[] HEADERS = {
+            "ID", "Vaqt", "Ism", "Telefon", "Xizmat", "Min narx", "Max narx", "Chat ID"
+    };
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final ServiceRepository serviceRepo = new ServiceRepository();
+    // Bir vaqtda bitta eksport: bir nechta katta eksport o'quvchi ulanishlarni band qilib qo'ymasligi uchun
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED), runnable -> {
+        Thread thread = new Thread(runnable, "appointment-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Bir sahifadagi qator (ulanish yopilgandan keyin yoziladi)
+    private static final class ExportRow {
+        final int id;
+        final long chatId;
+        final String fullName;
+        final String phone;
+        final int serviceId;
+        final long startMinute;
+
+        ExportRow(ResultSet rs) throws SQLException {
+            this.id = rs.getInt("id");
+            this.chatId = rs.getLong("chat_id");
+            this.fullName = rs.getString("full_name");
+            this.phone = rs.getString("phone");
+            this.serviceId = rs.getInt("service_id");
+            this.startMinute = rs.getLong("start_minute");
+        }
+    }
+
+    // Tayyor vaqtinchalik fayl qaytadi; yuborilgandan keyin chaqiruvchi uni o'chiradi.
+    // filter null bo'lsa (AppointmentFilter.decode rad etgan kod) navbatga qo'yilmaydi
+    public CompletableFuture<File> exportAsync(AppointmentRepository.AppointmentFilter filter) {
+        if (filter == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Eksport filtri noto'g'ri"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> export(filter), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private File export(AppointmentRepository.AppointmentFilter filter) {
+        String sql = "SELECT id, chat_id, full_name, phone, service_id, start_minute FROM appointments " +
+                "WHERE start_minute >= ? AND start_minute < ?" +
+                (filter.getServiceId() != 0 ? " AND service_id = ?" : "") +
+                " AND (start_minute > ? OR (start_minute = ? AND id > ?))" +
+                " ORDER BY start_minute, id LIMIT " + PAGE_SIZE;
+
+        File file = null;
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        try {
+            file = File.createTempFile("navbatlar", ".xlsx");
+            SXSSFSheet sheet = workbook.createSheet("Navbatlar");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+            writeHeader(workbook, sheet);
+
+            int rowIndex = 1;
+            long afterStart = Long.MIN_VALUE;
+            int afterId = 0;
+            List<ExportRow> page;
+            do {
+                page = readPage(sql, filter, afterStart, afterId);
+                for (ExportRow exportRow : page) {
+                    Row row = sheet.createRow(rowIndex++);
+                    row.createCell(0).setCellValue(exportRow.id);
+                    Cell time = row.createCell(1);
+                    time.setCellValue(TimeSlots.fromEpochMinute(exportRow.startMinute));
+                    time.setCellStyle(dateStyle);
+                    row.createCell(2).setCellValue(exportRow.fullName);
+                    row.createCell(3).setCellValue(exportRow.phone);
+
+                    ServiceRepository.Service service = serviceRepo.getServiceById(exportRow.serviceId);
+                    if (service != null) {
+                        row.createCell(4).setCellValue(service.getName());
+                        row.createCell(5).setCellValue(service.getMinPrice());
+                        row.createCell(6).setCellValue(service.getMaxPrice());
+                    }
+                    row.createCell(7).setCellValue(exportRow.chatId);
+                }
+                if (!page.isEmpty()) {
+                    ExportRow last = page.get(page.size() - 1);
+                    afterStart = last.startMinute;
+                    afterId = last.id;
+                }
+            } while (page.size() == PAGE_SIZE);
+
+            try (OutputStream out = new FileOutputStream(file)) {
+                workbook.write(out);
+            }
+            return file;
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+            if (file != null) {
+                file.delete();
+            }
+            throw new IllegalStateException("Eksport qilib bo'lmadi: " + e.getMessage(), e);
+        } finally {
+            // SXSSF vaqtinchalik fayllarini o'chirish
+            workbook.dispose();
+            try {
+                workbook.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // (afterStart, afterId) dan keyingi sahifa; ulanish qaytishdan oldin pool'ga qaytariladi
+    private List<ExportRow> readPage(String sql, AppointmentRepository.AppointmentFilter filter,
+                                     long afterStart, int afterId) throws SQLException {
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            pstmt.setLong(index++, filter.fromMinute());
+            pstmt.setLong(index++, filter.toMinute());
+            if (filter.getServiceId() != 0) {
+                pstmt.setInt(index++, filter.getServiceId());
+            }
+            pstmt.setLong(index++, afterStart);
+            pstmt.setLong(index++, afterStart);
+            pstmt.setInt(index, afterId);
+            ResultSet rs = pstmt.executeQuery();
+
+            List<ExportRow> page = new ArrayList<>(PAGE_SIZE);
+            while (rs.next()) {
+                page.add(new ExportRow(rs));
+            }
+            return page;
+        }
+    }
+
+    private void writeHeader(SXSSFWorkbook workbook, SXSSFSheet sheet) {
+        CellStyle headerStyle = workbook.createCellStyle();
+        Font bold = workbook.createFont();
+        bold.setBold(true);
+        headerStyle.setFont(bold);
+
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < HEADERS.length; i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+            // Ustun kengligi qo'lda: autoSizeColumn barcha qatorlarni kuzatishni talab qiladi
+            sheet.setColumnWidth(i, (i == 2 || i == 4 ? 28 : 16) * 256);
+        }
+        sheet.createFreezePane(0, 1);
+    }
+}
@@ -1,18 +1,46 @@
 package com.example.dentalbot.db;
 
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import com.example.dentalbot.BotConfig;
+import com.example.dentalbot.util.ClinicCalendar;
+import com.example.dentalbot.util.TimeSlots;
+import com.example.dentalbot.util.Trace;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class AppointmentRepository {
+    // Admin ro'yxatining bitta sahifasi: 10 qator * ~300 belgi Telegram'ning 4096 belgi limitidan kam
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_FIELD_LENGTH = 64;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
     private final DatabaseManager dbManager = DatabaseManager.getInstance();
     private final ServiceRepository serviceRepo = new ServiceRepository();
+    private final AvailabilityIndex availability = AvailabilityIndex.getInstance();
+    private final AppointmentStats stats = AppointmentStats.getInstance();
+    private final SlotFinder slotFinder = new SlotFinder(availability, ClinicCalendar.getInstance());
+    private final UserAppointmentsCache userAppointments = UserAppointmentsCache.getInstance();
+    private final List<AppointmentListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Navbat saqlangan/o'chirilganda xabardor qilinadi (bazaga yozilgandan keyin).
+    // Bu yerda serviceName null bo'ladi - kerak bo'lsa serviceId bo'yicha olinadi.
+    public interface AppointmentListener {
+        void appointmentSaved(Appointment appointment);
+
+        void appointmentDeleted(Appointment appointment);
+    }
+
+    public void addListener(AppointmentListener listener) {
+        listeners.add(listener);
+    }
 
     public static class Appointment {
         private int id;
@@ -22,9 +50,18 @@ public class AppointmentRepository {
         private int serviceId;
         private String serviceName;
         private String appointmentTime;
+        private int resourceId;
+        private int durationMinutes;
 
         public Appointment(int id, long chatId, String fullName, String phone,
                            int serviceId, String serviceName, String appointmentTime) {
+            this(id, chatId, fullName, phone, serviceId, serviceName, appointmentTime, 0, TimeSlots.SLOT_MINUTES);
+        }
+
+        // resourceId - ClinicCalendar resursi, durationMinutes - egallangan vaqt;
+        // ro'yxat so'rovlarida o'qilmaydi (0 va bitta slot)
+        public Appointment(int id, long chatId, String fullName, String phone, int serviceId, String serviceName,
+                           String appointmentTime, int resourceId, int durationMinutes) {
             this.id = id;
             this.chatId = chatId;
             this.fullName = fullName;
@@ -32,6 +69,8 @@ public class AppointmentRepository {
             this.serviceId = serviceId;
             this.serviceName = serviceName;
             this.appointmentTime = appointmentTime;
+            this.resourceId = resourceId;
+            this.durationMinutes = durationMinutes;
         }
 
         public int getId() {
@@ -61,16 +100,86 @@ public class AppointmentRepository {
         public String getAppointmentTime() {
             return appointmentTime;
         }
+
+        public int getResourceId() {
+            return resourceId;
+        }
+
+        public int getDurationMinutes() {
+            return durationMinutes;
+        }
     }
 
-    public void saveAppointment(long chatId, String appointmentTime, String phone,
-                                String fullName, int serviceId) {
-        if (isTimeBooked(appointmentTime)) {
-            throw new IllegalStateException("Vaqt allaqachon band!");
+    // Band qilish natijasi: RESERVED yoki TAKEN (eng yaqin bo'sh vaqtlar taklifi bilan)
+    public static class Reservation {
+        public enum Status {
+            RESERVED, TAKEN
+        }
+
+        private final Status status;
+        private final int appointmentId;
+        private final List<String> alternatives;
+
+        private Reservation(Status status, int appointmentId, List<String> alternatives) {
+            this.status = status;
+            this.appointmentId = appointmentId;
+            this.alternatives = alternatives;
+        }
+
+        public Status getStatus() {
+            return status;
         }
 
-        String sql = "INSERT INTO appointments(chat_id, full_name, phone, service_id, appointment_time) " +
-                "VALUES(?, ?, ?, ?, ?)";
+        public int getAppointmentId() {
+            return appointmentId;
+        }
+
+        // TAKEN bo'lsa taklif qilinadigan vaqtlar (tartiblangan), topilmasa bo'sh ro'yxat
+        public List<String> getAlternatives() {
+            return alternatives;
+        }
+    }
+
+    // Tekshirish va yozish bitta INSERT bilan: xizmat davomiyligi oralig'ida resursning boshqa navbati
+    // bo'lsa yozilmaydi (UNIQUE xatoligisiz). Ikki bemor bir resursni bir paytda tasdiqlasa, bittasi yozadi,
+    // ikkinchisi keyingi bo'sh resursga o'tadi. Hamma resurs band yoki vaqt ish vaqtidan tashqarida bo'lsa TAKEN
+    public Reservation reserveSlot(long chatId, String appointmentTime, String phone,
+                                   String fullName, int serviceId) {
+        int durationSlots = durationSlots(serviceId);
+        long startMinute = TimeSlots.epochMinute(appointmentTime);
+        long endMinute = startMinute + (long) durationSlots * TimeSlots.SLOT_MINUTES;
+
+        long searchStarted = System.nanoTime();
+        List<Integer> freeResources = slotFinder.freeResources(TimeSlots.parse(appointmentTime), durationSlots);
+        Trace.span("slots.freeResources", searchStarted);
+
+        Appointment saved = null;
+        for (int resourceId : freeResources) {
+            saved = insertAppointment(chatId, appointmentTime, phone, fullName, serviceId,
+                    resourceId, startMinute, endMinute);
+            if (saved != null) {
+                break;
+            }
+        }
+
+        if (saved == null) {
+            return new Reservation(Reservation.Status.TAKEN, 0,
+                    findAlternativeTimes(appointmentTime, serviceId, BotConfig.ALTERNATIVE_SLOTS));
+        }
+
+        // RETURNING so'rovi statement yopilganda commit bo'ladi, shuning uchun xabardor qilish undan keyin
+        notifySaved(saved);
+        return new Reservation(Reservation.Status.RESERVED, saved.getId(), List.of());
+    }
+
+    // Resurs [startMinute, endMinute) oralig'ida band bo'lsa null. Kesishish UNIQUE(resource_id, start_minute)
+    // indeksi bo'yicha oraliq qidiruvi: navbat bir kundan uzun emas, shuning uchun bir kun oldingi boshlanishlar yetarli
+    private Appointment insertAppointment(long chatId, String appointmentTime, String phone, String fullName,
+                                          int serviceId, int resourceId, long startMinute, long endMinute) {
+        String sql = "INSERT INTO appointments(chat_id, full_name, phone, service_id, resource_id, start_minute, end_minute) " +
+                "SELECT ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM appointments " +
+                "WHERE resource_id = ? AND start_minute > ? AND start_minute < ? AND end_minute > ?) " +
+                "ON CONFLICT(resource_id, start_minute) DO NOTHING RETURNING id";
 
         try (Connection conn = dbManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -79,281 +188,482 @@ public class AppointmentRepository {
             pstmt.setString(2, fullName);
             pstmt.setString(3, phone);
             pstmt.setInt(4, serviceId);
-            pstmt.setString(5, appointmentTime);
-            pstmt.executeUpdate();
+            pstmt.setInt(5, resourceId);
+            pstmt.setLong(6, startMinute);
+            pstmt.setLong(7, endMinute);
+            pstmt.setInt(8, resourceId);
+            pstmt.setLong(9, startMinute - MINUTES_PER_DAY);
+            pstmt.setLong(10, endMinute);
+            pstmt.setLong(11, startMinute);
+            ResultSet rs = pstmt.executeQuery();
 
+            if (rs.next()) {
+                return new Appointment(rs.getInt(1), chatId, fullName, phone, serviceId, null,
+                        appointmentTime, resourceId, (int) (endMinute - startMinute));
+            }
+            return null;
         } catch (SQLException e) {
             e.printStackTrace();
             throw new RuntimeException("Navbat saqlashda xatolik: " + e.getMessage());
         }
     }
 
+    // Xizmat davomiyligi slotlarda; xizmat topilmasa bitta slot
+    private int durationSlots(int serviceId) {
+        ServiceRepository.Service service = serviceRepo.getServiceById(serviceId);
+        return service != null ? service.getDurationSlots() : 1;
+    }
+
+    public void saveAppointment(long chatId, String appointmentTime, String phone,
+                                String fullName, int serviceId) {
+        Reservation reservation = reserveSlot(chatId, appointmentTime, phone, fullName, serviceId);
+        if (reservation.getStatus() == Reservation.Status.TAKEN) {
+            throw new IllegalStateException("Vaqt allaqachon band!");
+        }
+    }
+
+    // Bu vaqtda bo'sh resurs yo'q (hammasi band yoki ish vaqtidan tashqarida).
+    // Xotiradagi indeksdan javob beradi, bazaga murojaat qilmaydi
     public boolean isTimeBooked(String appointmentTime) {
-        String sql = "SELECT COUNT(*) FROM appointments WHERE appointment_time = ?";
+        return isTimeBooked(appointmentTime, TimeSlots.SLOT_MINUTES);
+    }
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // [appointmentTime, appointmentTime + durationMinutes) oralig'i hech bir resursda to'liq bo'sh emas
+    public boolean isTimeBooked(String appointmentTime, int durationMinutes) {
+        int durationSlots = Math.max(1, (durationMinutes + TimeSlots.SLOT_MINUTES - 1) / TimeSlots.SLOT_MINUTES);
+        long started = System.nanoTime();
+        boolean booked = slotFinder.freeResources(TimeSlots.parse(appointmentTime), durationSlots).isEmpty();
+        Trace.span("slots.isTimeBooked", started);
+        return booked;
+    }
 
-            pstmt.setString(1, appointmentTime);
-            ResultSet rs = pstmt.executeQuery();
+    // Xizmat boshlanishi mumkin bo'lgan slotlar: ish vaqti ichida, butun davomiylik bo'sh va hali o'tmagan
+    public long getFreeSlots(LocalDate date, int serviceId) {
+        return slotFinder.freeSlots(date, durationSlots(serviceId));
+    }
 
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+    // Admin ro'yxati filtri: sana oralig'i [from, to), "kelgusi" (so'rov paytidagi hozirgi vaqtdan) va xizmat.
+    // Callback data'ga sig'ishi uchun qisqa satrga kodlanadi: "u", "a", "d<kun>-<kun>", ixtiyoriy ".s<id>"
+    public static class AppointmentFilter {
+        private final boolean upcoming;
+        private final long fromDay;
+        private final long toDay;
+        private final int serviceId;
+
+        private AppointmentFilter(boolean upcoming, long fromDay, long toDay, int serviceId) {
+            this.upcoming = upcoming;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.serviceId = serviceId;
+        }
+
+        public static AppointmentFilter all() {
+            return new AppointmentFilter(false, Long.MIN_VALUE, Long.MAX_VALUE, 0);
+        }
+
+        public static AppointmentFilter upcoming() {
+            return new AppointmentFilter(true, Long.MIN_VALUE, Long.MAX_VALUE, 0);
+        }
+
+        public static AppointmentFilter between(LocalDate from, LocalDate to) {
+            return new AppointmentFilter(false, from.toEpochDay(), to.toEpochDay(), 0);
+        }
+
+        public AppointmentFilter withService(int serviceId) {
+            return new AppointmentFilter(upcoming, fromDay, toDay, serviceId);
+        }
+
+        public int getServiceId() {
+            return serviceId;
+        }
+
+        public String encode() {
+            String base = upcoming ? "u" : fromDay == Long.MIN_VALUE ? "a" : "d" + fromDay + "-" + toDay;
+            return serviceId == 0 ? base : base + ".s" + serviceId;
+        }
+
+        // Buzilgan yoki o'zgartirilgan kod uchun null
+        public static AppointmentFilter decode(String code) {
+            String[] parts = code.split("\\.", -1);
+            if (parts.length > 2 || (parts.length == 2 && !parts[1].startsWith("s"))) {
+                return null;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            try {
+                AppointmentFilter filter;
+                if (parts[0].equals("u")) {
+                    filter = upcoming();
+                } else if (parts[0].equals("a")) {
+                    filter = all();
+                } else if (parts[0].startsWith("d")) {
+                    String[] days = parts[0].substring(1).split("-", -1);
+                    if (days.length != 2) {
+                        return null;
+                    }
+                    long fromDay = Long.parseLong(days[0]);
+                    long toDay = Long.parseLong(days[1]);
+                    // describe() va toMinute() uchun LocalDate oralig'ida bo'lishi kerak
+                    if (fromDay >= toDay || fromDay < LocalDate.MIN.toEpochDay() || toDay > LocalDate.MAX.toEpochDay()) {
+                        return null;
+                    }
+                    filter = new AppointmentFilter(false, fromDay, toDay, 0);
+                } else {
+                    return null;
+                }
+                if (parts.length == 1) {
+                    return filter;
+                }
+                int serviceId = Integer.parseInt(parts[1].substring(1));
+                return serviceId > 0 ? filter.withService(serviceId) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // Sana qismi uchun nom (xizmat nomi alohida qo'shiladi)
+        public String describe() {
+            if (upcoming) {
+                return "Kelgusi navbatlar";
+            }
+            if (fromDay == Long.MIN_VALUE) {
+                return "Barcha navbatlar";
+            }
+            DateTimeFormatter format = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+            LocalDate from = LocalDate.ofEpochDay(fromDay);
+            LocalDate last = LocalDate.ofEpochDay(toDay - 1);
+            return "Navbatlar: " + from.format(format) + (last.equals(from) ? "" : " - " + last.format(format));
+        }
+
+        long fromMinute() {
+            long from = fromDay == Long.MIN_VALUE ? Long.MIN_VALUE : fromDay * 24 * 60;
+            return upcoming ? Math.max(from, TimeSlots.epochMinute(LocalDateTime.now())) : from;
+        }
+
+        long toMinute() {
+            return toDay == Long.MAX_VALUE ? Long.MAX_VALUE : toDay * 24 * 60;
         }
-        return false;
     }
 
-    public String getAllAppointments() {
-        StringBuilder sb = new StringBuilder("Barcha navbatlar:\n\n");
-        String sql = "SELECT a.*, s.name as service_name FROM appointments a " +
-                "LEFT JOIN services s ON a.service_id = s.id " +
-                "ORDER BY a.appointment_time";
+    // Ro'yxatning bitta sahifasi: tayyor matn va navigatsiya uchun birinchi/oxirgi qator kaliti (start_minute, id)
+    public static class AppointmentPage {
+        private final String text;
+        private final int size;
+        private final long firstStart;
+        private final int firstId;
+        private final long lastStart;
+        private final int lastId;
+        private final boolean hasPrevious;
+        private final boolean hasNext;
+
+        private AppointmentPage(String text, int size, long firstStart, int firstId, long lastStart, int lastId,
+                                boolean hasPrevious, boolean hasNext) {
+            this.text = text;
+            this.size = size;
+            this.firstStart = firstStart;
+            this.firstId = firstId;
+            this.lastStart = lastStart;
+            this.lastId = lastId;
+            this.hasPrevious = hasPrevious;
+            this.hasNext = hasNext;
+        }
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+        public String getText() {
+            return text;
+        }
 
-            while (rs.next()) {
-                sb.append("🆔 ID: ").append(rs.getInt("id"))
-                        .append("\n👤 Ism: ").append(rs.getString("full_name"))
-                        .append("\n📞 Tel: ").append(rs.getString("phone"))
-                        .append("\n🛠 Xizmat: ").append(rs.getString("service_name"))
-                        .append("\n🕒 Vaqt: ").append(rs.getString("appointment_time"))
-                        .append("\n━━━━━━━━━━━━━━━━━━━━\n");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return "Navbatlar topilmadi.";
+        public int getSize() {
+            return size;
+        }
+
+        public long getFirstStart() {
+            return firstStart;
+        }
+
+        public int getFirstId() {
+            return firstId;
+        }
+
+        public long getLastStart() {
+            return lastStart;
+        }
+
+        public int getLastId() {
+            return lastId;
+        }
+
+        public boolean hasPrevious() {
+            return hasPrevious;
+        }
+
+        public boolean hasNext() {
+            return hasNext;
         }
-        return sb.toString();
     }
 
-    public String getUserAppointments(long chatId) {
-        StringBuilder sb = new StringBuilder("Sizning navbatlaringiz:\n\n");
-        String sql = "SELECT a.*, s.name as service_name FROM appointments a " +
-                "LEFT JOIN services s ON a.service_id = s.id " +
-                "WHERE a.chat_id = ? ORDER BY a.appointment_time";
+    // Filtrning birinchi sahifasi
+    public AppointmentPage getAppointmentsPage(AppointmentFilter filter) {
+        return queryPage(filter, null, 0, false);
+    }
 
-        try (Connection conn = dbManager.getConnection();
+    // (afterStart, afterId) kalitidan keyingi sahifa
+    public AppointmentPage getAppointmentsPageAfter(AppointmentFilter filter, long afterStart, int afterId) {
+        return queryPage(filter, afterStart, afterId, false);
+    }
+
+    // (beforeStart, beforeId) kalitidan oldingi sahifa
+    public AppointmentPage getAppointmentsPageBefore(AppointmentFilter filter, long beforeStart, int beforeId) {
+        return queryPage(filter, beforeStart, beforeId, true);
+    }
+
+    // Keyset pagination: OFFSET ishlatilmaydi, (start_minute, id) kalitidan boshlab indeks bo'yicha
+    // PAGE_SIZE + 1 qator o'qiladi (ortiqchasi keyingi sahifa borligini bildiradi)
+    private AppointmentPage queryPage(AppointmentFilter filter, Long keyStart, int keyId, boolean backward) {
+        String sql = "SELECT a.id, a.full_name, a.phone, a.start_minute, s.name as service_name " +
+                "FROM appointments a LEFT JOIN services s ON a.service_id = s.id " +
+                "WHERE a.start_minute >= ? AND a.start_minute < ?" +
+                (filter.getServiceId() != 0 ? " AND a.service_id = ?" : "") +
+                (keyStart != null ? (backward ? " AND (a.start_minute, a.id) < (?, ?)" : " AND (a.start_minute, a.id) > (?, ?)") : "") +
+                (backward ? " ORDER BY a.start_minute DESC, a.id DESC" : " ORDER BY a.start_minute, a.id") +
+                " LIMIT " + (PAGE_SIZE + 1);
+
+        List<String> rows = new ArrayList<>(PAGE_SIZE);
+        long[] starts = new long[PAGE_SIZE];
+        int[] ids = new int[PAGE_SIZE];
+        boolean more = false;
+
+        try (Connection conn = dbManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setLong(1, chatId);
+            int index = 1;
+            pstmt.setLong(index++, filter.fromMinute());
+            pstmt.setLong(index++, filter.toMinute());
+            if (filter.getServiceId() != 0) {
+                pstmt.setInt(index++, filter.getServiceId());
+            }
+            if (keyStart != null) {
+                pstmt.setLong(index++, keyStart);
+                pstmt.setInt(index, keyId);
+            }
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
-                sb.append("🆔 ID: ").append(rs.getInt("id"))
-                        .append("\n🛠 Xizmat: ").append(rs.getString("service_name"))
-                        .append("\n🕒 Vaqt: ").append(rs.getString("appointment_time"))
-                        .append("\n━━━━━━━━━━━━━━━━━━━━\n");
+                if (rows.size() == PAGE_SIZE) {
+                    more = true;
+                    break;
+                }
+                int i = rows.size();
+                starts[i] = rs.getLong("start_minute");
+                ids[i] = rs.getInt("id");
+                rows.add("🆔 ID: " + ids[i] +
+                        "\n👤 Ism: " + truncate(rs.getString("full_name")) +
+                        "\n📞 Tel: " + truncate(rs.getString("phone")) +
+                        "\n🛠 Xizmat: " + truncate(rs.getString("service_name")) +
+                        "\n🕒 Vaqt: " + TimeSlots.format(starts[i]) +
+                        "\n━━━━━━━━━━━━━━━━━━━━\n");
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Navbatlar topilmadi.";
+            return new AppointmentPage("Navbatlar topilmadi.", 0, 0, 0, 0, 0, false, false);
+        }
+
+        int size = rows.size();
+        if (size == 0) {
+            return new AppointmentPage("", 0, 0, 0, 0, 0, !backward && keyStart != null, backward && keyStart != null);
+        }
+
+        // Orqaga o'qilgan qatorlar vaqt bo'yicha o'sish tartibiga qaytariladi
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            sb.append(rows.get(backward ? size - 1 - i : i));
         }
-        return sb.toString().isEmpty() ? "Hozircha navbatlaringiz yo'q." : sb.toString();
+
+        int first = backward ? size - 1 : 0;
+        int last = backward ? 0 : size - 1;
+        // Kalitdan boshlangan sahifaning kalit tomonida doim sahifa bor
+        boolean hasPrevious = backward ? more : keyStart != null;
+        boolean hasNext = backward || more;
+        return new AppointmentPage(sb.toString(), size, starts[first], ids[first], starts[last], ids[last], hasPrevious, hasNext);
     }
 
+    // Foydalanuvchi kiritgan matnlar sahifa hajmini (4096 belgi) buzmasligi uchun
+    private static String truncate(String value) {
+        if (value == null) {
+            return "-";
+        }
+        return value.length() <= MAX_FIELD_LENGTH ? value : value.substring(0, MAX_FIELD_LENGTH - 1) + "…";
+    }
+
+    // Chatning hali tugamagan navbatlari, vaqt bo'yicha. UserAppointmentsCache'dan: bazaga faqat
+    // birinchi marta va shu chatda navbat saqlangan/o'chirilgandan keyin murojaat qilinadi
     public List<Appointment> getUserAppointmentsList(long chatId) {
-        List<Appointment> appointments = new ArrayList<>();
-        String sql = "SELECT a.*, s.name as service_name FROM appointments a " +
-                "LEFT JOIN services s ON a.service_id = s.id " +
-                "WHERE a.chat_id = ? ORDER BY a.appointment_time";
+        List<UserAppointmentsCache.Row> rows = userAppointments.get(chatId);
+        if (rows == null) {
+            long generation = userAppointments.generation();
+            rows = loadUserAppointments(chatId);
+            if (rows == null) {
+                return new ArrayList<>();
+            }
+            userAppointments.put(chatId, rows, generation);
+        }
 
-        try (Connection conn = dbManager.getConnection();
+        long now = TimeSlots.epochMinute(LocalDateTime.now());
+        List<Appointment> appointments = new ArrayList<>(rows.size());
+        for (UserAppointmentsCache.Row row : rows) {
+            if (row.endMinute <= now) {
+                continue;
+            }
+            ServiceRepository.Service service = serviceRepo.getServiceById(row.serviceId);
+            appointments.add(new Appointment(row.id, chatId, row.fullName, row.phone, row.serviceId,
+                    service != null ? service.getName() : null, row.appointmentTime,
+                    row.resourceId, (int) (row.endMinute - row.startMinute)));
+        }
+        return appointments;
+    }
+
+    // Xatolikda null - natija keshga yozilmaydi
+    private List<UserAppointmentsCache.Row> loadUserAppointments(long chatId) {
+        String sql = "SELECT id, full_name, phone, service_id, resource_id, start_minute, end_minute " +
+                "FROM appointments WHERE chat_id = ? AND end_minute > ? ORDER BY start_minute";
+
+        try (Connection conn = dbManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setLong(1, chatId);
+            pstmt.setLong(2, TimeSlots.epochMinute(LocalDateTime.now()));
             ResultSet rs = pstmt.executeQuery();
 
+            List<UserAppointmentsCache.Row> rows = new ArrayList<>();
             while (rs.next()) {
-                appointments.add(new Appointment(
+                rows.add(new UserAppointmentsCache.Row(
                         rs.getInt("id"),
-                        rs.getLong("chat_id"),
                         rs.getString("full_name"),
                         rs.getString("phone"),
                         rs.getInt("service_id"),
-                        rs.getString("service_name"),
-                        rs.getString("appointment_time")
-                ));
+                        rs.getInt("resource_id"),
+                        rs.getLong("start_minute"),
+                        rs.getLong("end_minute")));
             }
+            return rows;
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return appointments;
     }
 
     public void deleteAppointment(int id) {
-        String sql = "DELETE FROM appointments WHERE id = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        deleteAppointment(id, null);
+    }
 
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    // Bemorning o'zi bekor qilishi: navbat boshqa chatga tegishli bo'lsa o'chirilmaydi (false)
+    public boolean deleteUserAppointment(long chatId, int id) {
+        return deleteAppointment(id, chatId);
     }
 
-    public void checkAndSendReminders(TelegramLongPollingBot bot) {
-        String sql = "SELECT a.*, s.name as service_name FROM appointments a " +
-                "LEFT JOIN services s ON a.service_id = s.id " +
-                "WHERE a.appointment_time > datetime('now')";
+    private boolean deleteAppointment(int id, Long ownerChatId) {
+        String sql = "DELETE FROM appointments WHERE id = ?" + (ownerChatId != null ? " AND chat_id = ?" : "") +
+                " RETURNING chat_id, full_name, phone, service_id, resource_id, start_minute, end_minute";
 
+        Appointment deleted = null;
         try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-
-            while (rs.next()) {
-                LocalDateTime appointmentTime = LocalDateTime.parse(
-                        rs.getString("appointment_time"),
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
-                );
-
-                long chatId = rs.getLong("chat_id");
-                String fullName = rs.getString("full_name");
-                String serviceName = rs.getString("service_name");
-                int id = rs.getInt("id");
-
-                boolean sent1Day = rs.getBoolean("reminder_sent_1day");
-                boolean sent2Hours = rs.getBoolean("reminder_sent_2hours");
-                boolean sent30Min = rs.getBoolean("reminder_sent_30min");
-
-                LocalDateTime now = LocalDateTime.now();
-                LocalDateTime oneDayBefore = appointmentTime.minusDays(1);
-                LocalDateTime twoHoursBefore = appointmentTime.minusHours(2);
-                LocalDateTime thirtyMinBefore = appointmentTime.minusMinutes(30);
-
-                // 1 kun oldin eslatma - FAQAT BIR MARTA
-                if (!sent1Day && now.isAfter(oneDayBefore) && now.isBefore(oneDayBefore.plusMinutes(30))) {
-                    sendReminder(bot, chatId,
-                            "⏰ Eslatma: Hurmatli " + fullName +
-                                    ", sizning " + serviceName + " navbatingizga 1 kun qoldi." +
-                                    "\n🕒 Sana: " + appointmentTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) +
-                                    "\n\n📍 Manzil: Samarqand, Urgut tumani, Qora tepa" +
-                                    "\n📞 Telefon: +998 91 034 33 55");
-                    updateReminderSent(id, "reminder_sent_1day", true);
-                }
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-                // 2 soat oldin eslatma - FAQAT BIR MARTA
-                if (!sent2Hours && now.isAfter(twoHoursBefore) && now.isBefore(twoHoursBefore.plusMinutes(30))) {
-                    sendReminder(bot, chatId,
-                            "⏰ Eslatma: Hurmatli " + fullName +
-                                    ", sizning " + serviceName + " navbatingizga 2 soat qoldi." +
-                                    "\n🕒 Sana: " + appointmentTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
-                    updateReminderSent(id, "reminder_sent_2hours", true);
-                }
+            pstmt.setInt(1, id);
+            if (ownerChatId != null) {
+                pstmt.setLong(2, ownerChatId);
+            }
+            ResultSet rs = pstmt.executeQuery();
 
-                // 30 daqiqa oldin eslatma - FAQAT BIR MARTA
-                if (!sent30Min && now.isAfter(thirtyMinBefore) && now.isBefore(thirtyMinBefore.plusMinutes(30))) {
-                    sendReminder(bot, chatId,
-                            "⏰ Eslatma: Hurmatli " + fullName +
-                                    ", sizning " + serviceName + " navbatingizga 30 daqiqa qoldi." +
-                                    "\n🕒 Sana: " + appointmentTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) +
-                                    "\n\n❗ Iltimos, vaqtida kelishingizni so'raymiz.");
-                    updateReminderSent(id, "reminder_sent_30min", true);
-                }
+            if (rs.next()) {
+                deleted = new Appointment(id,
+                        rs.getLong("chat_id"),
+                        rs.getString("full_name"),
+                        rs.getString("phone"),
+                        rs.getInt("service_id"),
+                        null,
+                        TimeSlots.format(rs.getLong("start_minute")),
+                        rs.getInt("resource_id"),
+                        (int) (rs.getLong("end_minute") - rs.getLong("start_minute")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-    }
 
-
-    public String findNextAvailableTime(String preferredTime) {
-        LocalDateTime preferred = LocalDateTime.parse(preferredTime,
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-
-        // Keyingi 2 kun ichida bo'sh vaqt qidirish
-        for (int day = 0; day < 2; day++) {
-            // YANGI: 8:00 dan 19:00 gacha
-            for (int hour = 8; hour <= 19; hour++) {
-                for (int minute = 0; minute < 60; minute += 30) {
-                    LocalDateTime slot = preferred.plusDays(day)
-                            .withHour(hour)
-                            .withMinute(minute)
-                            .withSecond(0)
-                            .withNano(0);
-
-                    if (slot.isAfter(preferred)) {
-                        String slotStr = slot.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-                        if (!isTimeBooked(slotStr)) {
-                            return slotStr;
-                        }
-                    }
-                }
-            }
+        if (deleted == null) {
+            return false;
         }
-        return null;
+        notifyDeleted(deleted);
+        return true;
     }
 
+    private void notifySaved(Appointment saved) {
+        long startMinute = TimeSlots.epochMinute(saved.getAppointmentTime());
+        availability.booked(saved.getResourceId(), startMinute, startMinute + saved.getDurationMinutes(), saved.getId());
+        stats.added(startMinute, saved.getServiceId());
+        userAppointments.invalidate(saved.getChatId());
+        listeners.forEach(listener -> listener.appointmentSaved(saved));
+    }
 
-    private void updateReminderSent(int id, String column, boolean value) {
-        String sql = "UPDATE appointments SET " + column + " = ? WHERE id = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    private void notifyDeleted(Appointment deleted) {
+        long startMinute = TimeSlots.epochMinute(deleted.getAppointmentTime());
+        availability.released(deleted.getResourceId(), startMinute,
+                startMinute + deleted.getDurationMinutes(), deleted.getId());
+        stats.removed(startMinute, deleted.getServiceId());
+        userAppointments.invalidate(deleted.getChatId());
+        listeners.forEach(listener -> listener.appointmentDeleted(deleted));
+    }
 
-            pstmt.setBoolean(1, value);
-            pstmt.setInt(2, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    // Tanlangan vaqtdan keyingi, xizmat davomiyligi sig'adigan birinchi bo'sh vaqt yoki null
+    public String findNextAvailableTime(String preferredTime, int serviceId) {
+        long started = System.nanoTime();
+        LocalDateTime next = slotFinder.firstFreeAfter(TimeSlots.parse(preferredTime), durationSlots(serviceId));
+        Trace.span("slots.findNextAvailableTime", started);
+        return next == null ? null : TimeSlots.format(next);
     }
 
-    private void sendReminder(TelegramLongPollingBot bot, long chatId, String message) {
-        SendMessage msg = new SendMessage(String.valueOf(chatId), message);
-        try {
-            bot.execute(msg);
-            System.out.println("Eslatma yuborildi: " + chatId);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
+    // Tanlangan vaqtga eng yaqin count ta bo'sh vaqt (oldin va keyin), vaqt bo'yicha tartiblangan
+    public List<String> findAlternativeTimes(String preferredTime, int serviceId, int count) {
+        long started = System.nanoTime();
+        List<String> alternatives = new ArrayList<>(count);
+        for (LocalDateTime time : slotFinder.nearestFree(TimeSlots.parse(preferredTime), durationSlots(serviceId), count)) {
+            alternatives.add(TimeSlots.format(time));
         }
+        Trace.span("slots.findAlternativeTimes", started);
+        return alternatives;
     }
 
+    // Statistika AppointmentStats hisoblagichlaridan - navbatlar jadvali o'qilmaydi
     public int getMonthlyAppointmentCount(int year, int month) {
-        String sql = "SELECT COUNT(*) FROM appointments WHERE strftime('%Y-%m', appointment_time) = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return stats.monthCount(YearMonth.of(year, month));
+    }
 
-            String monthStr = String.format("%04d-%02d", year, month);
-            pstmt.setString(1, monthStr);
-            ResultSet rs = pstmt.executeQuery();
+    // [from, to) oralig'idagi navbatlar soni
+    public int getAppointmentCount(LocalDate from, LocalDate to) {
+        return stats.rangeCount(from, to);
+    }
 
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+    // [from, to) oralig'idagi kunlik navbatlar soni
+    public int[] getDailyAppointmentCounts(LocalDate from, LocalDate to) {
+        return stats.dailyCounts(from, to);
     }
 
     public String getServiceStatistics() {
-        StringBuilder sb = new StringBuilder("📊 Xizmatlar statistikasi:\n\n");
-        String sql = "SELECT s.name, COUNT(a.id) as count " +
-                "FROM services s LEFT JOIN appointments a ON s.id = a.service_id " +
-                "WHERE s.active = 1 " +
-                "GROUP BY s.name ORDER BY count DESC";
+        return formatServiceStatistics("📊 Xizmatlar statistikasi:\n\n", stats.serviceCounts());
+    }
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+    public String getServiceStatistics(YearMonth month) {
+        return formatServiceStatistics("📊 Xizmatlar statistikasi (" + month + "):\n\n", stats.serviceCounts(month));
+    }
 
-            while (rs.next()) {
-                sb.append("🛠 ").append(rs.getString("name"))
-                        .append(": ").append(rs.getInt("count"))
-                        .append(" ta\n");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return "Statistika topilmadi.";
+    private String formatServiceStatistics(String title, Map<Integer, Integer> counts) {
+        List<ServiceRepository.Service> services = new ArrayList<>(serviceRepo.getAllServices());
+        services.sort(Comparator.comparingInt((ServiceRepository.Service service) ->
+                counts.getOrDefault(service.getId(), 0)).reversed());
+
+        StringBuilder sb = new StringBuilder(title);
+        for (ServiceRepository.Service service : services) {
+            sb.append("🛠 ").append(service.getName())
+                    .append(": ").append(counts.getOrDefault(service.getId(), 0))
+                    .append(" ta\n");
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package com.example.dentalbot.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Navbatlar statistikasining xotiradagi hisoblagichlari: kun, oy, xizmat va oy+xizmat bo'yicha.
+// Ishga tushganda appointment_counts jadvalidan (triggerlar yuritadi) bir marta yuklanadi,
+// keyin AppointmentRepository save/delete paytida yangilab boriladi - admin statistikasi
+// navbatlar jadvalini o'qimaydi.
+public class AppointmentStats {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static AppointmentStats instance;
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final TreeMap<Long, Integer> byDay = new TreeMap<>();
+    private final Map<Integer, Integer> byMonth = new HashMap<>();
+    private final Map<Integer, Integer> byService = new HashMap<>();
+    private final Map<Integer, Map<Integer, Integer>> byMonthService = new HashMap<>();
+
+    private AppointmentStats() {
+        load();
+    }
+
+    public static synchronized AppointmentStats getInstance() {
+        if (instance == null) {
+            instance = new AppointmentStats();
+        }
+        return instance;
+    }
+
+    public synchronized int monthCount(YearMonth month) {
+        return byMonth.getOrDefault(monthKey(month), 0);
+    }
+
+    // Oy ichidagi xizmatlar bo'yicha sonlar (serviceId -> soni)
+    public synchronized Map<Integer, Integer> serviceCounts(YearMonth month) {
+        return new HashMap<>(byMonthService.getOrDefault(monthKey(month), Map.of()));
+    }
+
+    // Butun tarix bo'yicha xizmatlar sonlari
+    public synchronized Map<Integer, Integer> serviceCounts() {
+        return new HashMap<>(byService);
+    }
+
+    // [from, to) oralig'idagi navbatlar soni
+    public synchronized int rangeCount(LocalDate from, LocalDate to) {
+        int total = 0;
+        for (int count : byDay.subMap(from.toEpochDay(), to.toEpochDay()).values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    // [from, to) oralig'idagi har bir kun uchun navbatlar soni
+    public synchronized int[] dailyCounts(LocalDate from, LocalDate to) {
+        int[] counts = new int[(int) Math.max(0, to.toEpochDay() - from.toEpochDay())];
+        long first = from.toEpochDay();
+        for (Map.Entry<Long, Integer> entry : byDay.subMap(first, to.toEpochDay()).entrySet()) {
+            counts[(int) (entry.getKey() - first)] = entry.getValue();
+        }
+        return counts;
+    }
+
+    void added(long startMinute, int serviceId) {
+        apply(Math.floorDiv(startMinute, MINUTES_PER_DAY), serviceId, 1);
+    }
+
+    void removed(long startMinute, int serviceId) {
+        apply(Math.floorDiv(startMinute, MINUTES_PER_DAY), serviceId, -1);
+    }
+
+    private synchronized void apply(long day, int serviceId, int delta) {
+        int month = monthKey(YearMonth.from(LocalDate.ofEpochDay(day)));
+        byDay.merge(day, delta, AppointmentStats::sumOrRemove);
+        byMonth.merge(month, delta, AppointmentStats::sumOrRemove);
+        byService.merge(serviceId, delta, AppointmentStats::sumOrRemove);
+        byMonthService.computeIfAbsent(month, key -> new HashMap<>())
+                .merge(serviceId, delta, AppointmentStats::sumOrRemove);
+    }
+
+    private synchronized void load() {
+        String sql = "SELECT day, service_id, count FROM appointment_counts WHERE count > 0";
+
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                long day = rs.getLong("day");
+                int serviceId = rs.getInt("service_id");
+                int count = rs.getInt("count");
+                apply(day, serviceId, count);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Statistikani yuklab bo'lmadi: " + e.getMessage(), e);
+        }
+    }
+
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static Integer sumOrRemove(Integer current, Integer delta) {
+        int sum = current + delta;
+        return sum == 0 ? null : sum;
+    }
+}
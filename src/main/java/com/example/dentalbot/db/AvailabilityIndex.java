@@ -0,0 +1,174 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.util.ClinicCalendar;
+import com.example.dentalbot.util.LongIntHashMap;
+import com.example.dentalbot.util.TimeSlots;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Band vaqtlarning xotiradagi indeksi: (resurs, epoch-minute) -> appointment id.
+// Ishga tushganda bugundan boshlab HORIZON_DAYS kunlik navbatlar bitta so'rov bilan yuklanadi,
+// keyin AppointmentRepository save/delete paytida yangilab boriladi (write-through).
+// Oyna tashqarisidagi sanalar so'ralganda oyna bazadan kengaytiriladi.
+public class AvailabilityIndex {
+    private static final int HORIZON_DAYS = 60;
+    private static final int NO_APPOINTMENT = -1;
+    // Navbat bir kundan uzun bo'lmaydi (ClinicCalendar maskasi kun ichida)
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static AvailabilityIndex instance;
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongIntHashMap slots = new LongIntHashMap(1024, NO_APPOINTMENT);
+
+    // Indeks to'liq qamrab olgan oraliq: [fromMinute, toMinute)
+    private long fromMinute;
+    private long toMinute;
+
+    private AvailabilityIndex() {
+        LocalDate today = LocalDate.now();
+        fromMinute = TimeSlots.epochMinute(today);
+        toMinute = fromMinute;
+        lock.writeLock().lock();
+        try {
+            extendTo(TimeSlots.epochMinute(today.plusDays(HORIZON_DAYS)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static synchronized AvailabilityIndex getInstance() {
+        if (instance == null) {
+            instance = new AvailabilityIndex();
+        }
+        return instance;
+    }
+
+    // Resursning kundagi band slotlari (TimeSlots bitmask)
+    public long bookedSlots(int resourceId, LocalDate date) {
+        long dayStart = TimeSlots.epochMinute(date);
+        ensureCovered(dayStart, dayStart + 24 * 60);
+
+        long mask = 0L;
+        lock.readLock().lock();
+        try {
+            if (slots.size() == 0) {
+                return mask;
+            }
+            for (int slot = 0; slot < TimeSlots.SLOTS_PER_DAY; slot++) {
+                if (slots.containsKey(key(resourceId, dayStart + (long) slot * TimeSlots.SLOT_MINUTES))) {
+                    mask = TimeSlots.set(mask, slot);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return mask;
+    }
+
+    // Bazaga yozilgandan keyin AppointmentRepository tomonidan chaqiriladi.
+    // Navbat [startMinute, endMinute) oralig'idagi har bir slotni egallaydi
+    void booked(int resourceId, long startMinute, long endMinute, int appointmentId) {
+        lock.writeLock().lock();
+        try {
+            put(resourceId, startMinute, endMinute, appointmentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void released(int resourceId, long startMinute, long endMinute, int appointmentId) {
+        lock.writeLock().lock();
+        try {
+            for (long minute = startMinute; minute < endMinute; minute += TimeSlots.SLOT_MINUTES) {
+                long key = key(resourceId, minute);
+                if (slots.get(key) == appointmentId) {
+                    slots.remove(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(int resourceId, long startMinute, long endMinute, int appointmentId) {
+        for (long minute = startMinute; minute < endMinute; minute += TimeSlots.SLOT_MINUTES) {
+            slots.put(key(resourceId, minute), appointmentId);
+        }
+    }
+
+    private void ensureCovered(long from, long to) {
+        lock.readLock().lock();
+        try {
+            if (from >= fromMinute && to <= toMinute) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (from < fromMinute) {
+                extendFrom(floorToDay(from));
+            }
+            if (to > toMinute) {
+                // O'tib ketgan kunlarni xotiradan chiqarib, oynani oldinga surish
+                long today = TimeSlots.epochMinute(LocalDate.now());
+                if (fromMinute < today && from >= today) {
+                    slots.removeKeysBelow(key(0, today));
+                    fromMinute = today;
+                }
+                extendTo(Math.max(floorToDay(to - 1) + 24 * 60, today + HORIZON_DAYS * 24L * 60));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void extendFrom(long newFrom) {
+        load(newFrom, fromMinute);
+        fromMinute = newFrom;
+    }
+
+    private void extendTo(long newTo) {
+        load(toMinute, newTo);
+        toMinute = newTo;
+    }
+
+    private void load(long from, long to) {
+        // Oraliq boshidan oldin boshlanib, ichkariga cho'zilgan navbatlar ham olinadi (end_minute > from)
+        String sql = "SELECT id, resource_id, start_minute, end_minute FROM appointments " +
+                "WHERE start_minute >= ? AND start_minute < ? AND end_minute > ?";
+
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, from - MINUTES_PER_DAY);
+            pstmt.setLong(2, to);
+            pstmt.setLong(3, from);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                put(rs.getInt("resource_id"), rs.getLong("start_minute"), rs.getLong("end_minute"), rs.getInt("id"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Band vaqtlarni yuklab bo'lmadi: " + e.getMessage(), e);
+        }
+    }
+
+    // Kalit vaqt bo'yicha o'sib boradi (removeKeysBelow uchun): epoch-minute * 64 + resurs id
+    private static long key(int resourceId, long epochMinute) {
+        return epochMinute * ClinicCalendar.MAX_RESOURCES + resourceId;
+    }
+
+    private static long floorToDay(long epochMinute) {
+        return Math.floorDiv(epochMinute, 24 * 60) * 24 * 60;
+    }
+}
@@ -1,13 +1,59 @@
 package com.example.dentalbot.db;
 
+import com.example.dentalbot.util.Metrics;
+import com.example.dentalbot.util.Trace;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:sqlite:appointments.db";
+    // Benchmark'lar vaqtinchalik bazaga ulanishi uchun -Ddentalbot.db.url bilan almashtiriladi
+    private static final String DB_URL = System.getProperty("dentalbot.db.url", "jdbc:sqlite:appointments.db");
+    private static final int READER_COUNT = 4;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    private static final long ACQUIRE_TIMEOUT_MS = 10_000;
+    private static final long MMAP_SIZE = 64L * 1024 * 1024;
     private static DatabaseManager instance;
 
+    // So'rov vaqti (execute*() dan close() gacha, ya'ni natijani o'qish ham kiradi) chaqirgan metod bo'yicha.
+    // Label SQL matni bo'yicha bir marta aniqlanadi va keshlanadi
+    private static final Metrics.HistogramFamily QUERY_LATENCY = Metrics.getInstance().histogram(
+            "dentalbot_db_query_seconds", "SQLite so'rovi vaqti", "query");
+    private static final Metrics.HistogramFamily ACQUIRE_LATENCY = Metrics.getInstance().histogram(
+            "dentalbot_db_acquire_seconds", "Pool'dan ulanish olishni kutish", "pool");
+    private static final Map<String, QueryMetric> QUERY_METRICS = new ConcurrentHashMap<>();
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    // Bitta yozuvchi ulanish (SQLite bir vaqtda faqat bitta yozuvchiga ruxsat beradi)
+    // va bir nechta o'quvchi ulanishlar - hammasi dastur ishlashi davomida ochiq turadi
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final PooledConnection writer;
+    private final BlockingQueue<PooledConnection> readers = new ArrayBlockingQueue<>(READER_COUNT);
+
     private DatabaseManager() {
-        initDatabase();
+        try {
+            writer = new PooledConnection(open(false));
+            initDatabase();
+            for (int i = 0; i < READER_COUNT; i++) {
+                readers.add(new PooledConnection(open(true)));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Ma'lumotlar bazasiga ulanib bo'lmadi: " + e.getMessage(), e);
+        }
     }
 
     public static synchronized DatabaseManager getInstance() {
@@ -17,39 +63,266 @@ public class DatabaseManager {
         return instance;
     }
 
+    // Yozish uchun ulanish. close() chaqirilganda ulanish yopilmaydi, balki pool'ga qaytariladi
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        long started = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Yozuvchi ulanishni kutish vaqti tugadi");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ulanishni kutish to'xtatildi", e);
+        }
+        ACQUIRE_LATENCY.labels("writer").observeSince(started);
+        Trace.span("db.acquire writer", started);
+        return writer.lease(writerLock.getHoldCount() == 1, writerLock::unlock);
     }
 
-    private void initDatabase() {
+    // Faqat o'qish uchun ulanish (SELECT so'rovlari). WAL rejimida yozuvchini bloklamaydi
+    public Connection getReadConnection() throws SQLException {
+        // Yozuvchi ulanishni ushlab turgan oqim o'z yozuvlarini ko'rishi kerak
+        if (writerLock.isHeldByCurrentThread()) {
+            return getConnection();
+        }
+
+        long started = System.nanoTime();
+        PooledConnection reader;
+        try {
+            reader = readers.poll(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ulanishni kutish to'xtatildi", e);
+        }
+        if (reader == null) {
+            throw new SQLException("O'quvchi ulanishni kutish vaqti tugadi");
+        }
+        ACQUIRE_LATENCY.labels("reader").observeSince(started);
+        Trace.span("db.acquire reader", started);
+        return reader.lease(true, () -> readers.add(reader));
+    }
+
+    private Connection open(boolean readOnly) throws SQLException {
+        Connection conn = DriverManager.getConnection(DB_URL);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA mmap_size = " + MMAP_SIZE);
+            stmt.execute("PRAGMA query_only = " + (readOnly ? "ON" : "OFF"));
+        }
+        return conn;
+    }
+
+    // Sxema migratsiyalari: MIGRATIONS[i] bazani i-versiyadan i+1-versiyaga o'tkazadi.
+    // Joriy versiya PRAGMA user_version'da saqlanadi; har bir migratsiya bitta tranzaksiyada.
+    // Yangi o'zgarish faqat ro'yxat oxiriga qo'shiladi, mavjudlari tahrirlanmaydi.
+    private static final String[][] MIGRATIONS = {
+            // 1: dastlabki sxema (user_version'dan oldingi bazalarda jadvallar allaqachon bor)
+            {
+                    "CREATE TABLE IF NOT EXISTS services (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "name TEXT UNIQUE NOT NULL, " +
+                            "min_price INTEGER NOT NULL, " +
+                            "max_price INTEGER NOT NULL, " +
+                            "active BOOLEAN DEFAULT 1)",
+                    "CREATE TABLE IF NOT EXISTS appointments (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "chat_id LONG NOT NULL, " +
+                            "full_name TEXT, " +
+                            "phone TEXT, " +
+                            "service_id INTEGER, " +
+                            "appointment_time TEXT UNIQUE, " +
+                            "reminder_sent_1day BOOLEAN DEFAULT 0, " +
+                            "reminder_sent_2hours BOOLEAN DEFAULT 0, " +
+                            "reminder_sent_30min BOOLEAN DEFAULT 0, " +
+                            "FOREIGN KEY(service_id) REFERENCES services(id))"
+            },
+            // 2: appointment_time TEXT -> start_minute INTEGER (epoch-minute, TimeSlots), chat_id INTEGER,
+            // oraliq so'rovlari uchun indekslar. UNIQUE(start_minute) indeksi (start) indeksi vazifasini bajaradi
+            {
+                    "ALTER TABLE appointments RENAME TO appointments_v1",
+                    "CREATE TABLE appointments (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "chat_id INTEGER NOT NULL, " +
+                            "full_name TEXT, " +
+                            "phone TEXT, " +
+                            "service_id INTEGER, " +
+                            "start_minute INTEGER NOT NULL UNIQUE, " +
+                            "reminder_sent_1day INTEGER NOT NULL DEFAULT 0, " +
+                            "reminder_sent_2hours INTEGER NOT NULL DEFAULT 0, " +
+                            "reminder_sent_30min INTEGER NOT NULL DEFAULT 0, " +
+                            "FOREIGN KEY(service_id) REFERENCES services(id))",
+                    // Vaqt mahalliy, zonasiz: strftime('%s') uni UTC deb hisoblaydi, TimeSlots.epochMinute ham shunday
+                    "INSERT INTO appointments (id, chat_id, full_name, phone, service_id, start_minute, " +
+                            "reminder_sent_1day, reminder_sent_2hours, reminder_sent_30min) " +
+                            "SELECT id, CAST(chat_id AS INTEGER), full_name, phone, service_id, " +
+                            "CAST(strftime('%s', appointment_time) AS INTEGER) / 60, " +
+                            "COALESCE(reminder_sent_1day, 0), COALESCE(reminder_sent_2hours, 0), COALESCE(reminder_sent_30min, 0) " +
+                            "FROM appointments_v1 WHERE strftime('%s', appointment_time) IS NOT NULL",
+                    // Vaqti o'qilmaydigan navbatlar o'chirilmaydi - qo'lda tekshirish uchun alohida jadvalda qoladi
+                    "CREATE TABLE appointments_unparsed AS SELECT * FROM appointments_v1 " +
+                            "WHERE strftime('%s', appointment_time) IS NULL",
+                    // O'chirilgan navbatlar id'lari qayta ishlatilmasligi uchun AUTOINCREMENT hisoblagichi saqlanadi
+                    "INSERT INTO sqlite_sequence (name, seq) SELECT 'appointments', seq FROM sqlite_sequence " +
+                            "WHERE name = 'appointments_v1' " +
+                            "AND NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'appointments')",
+                    "UPDATE sqlite_sequence SET seq = MAX(seq, " +
+                            "(SELECT seq FROM sqlite_sequence WHERE name = 'appointments_v1')) " +
+                            "WHERE name = 'appointments' AND EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'appointments_v1')",
+                    "DROP TABLE appointments_v1",
+                    "CREATE INDEX idx_appointments_chat_start ON appointments (chat_id, start_minute)",
+                    "CREATE INDEX idx_appointments_service_start ON appointments (service_id, start_minute)"
+            },
+            // 3: kun va xizmat bo'yicha navbatlar soni (statistika uchun). Triggerlar hisobni navbat
+            // qo'shilgan/o'chirilgan tranzaksiyaning o'zida yangilaydi; service_id NULL bo'lsa 0
+            {
+                    "CREATE TABLE appointment_counts (" +
+                            "day INTEGER NOT NULL, " +
+                            "service_id INTEGER NOT NULL, " +
+                            "count INTEGER NOT NULL, " +
+                            "PRIMARY KEY(day, service_id)) WITHOUT ROWID",
+                    "INSERT INTO appointment_counts (day, service_id, count) " +
+                            "SELECT start_minute / 1440, COALESCE(service_id, 0), COUNT(*) FROM appointments " +
+                            "GROUP BY start_minute / 1440, COALESCE(service_id, 0)",
+                    "CREATE TRIGGER appointment_counts_insert AFTER INSERT ON appointments BEGIN " +
+                            "INSERT INTO appointment_counts (day, service_id, count) " +
+                            "VALUES (NEW.start_minute / 1440, COALESCE(NEW.service_id, 0), 1) " +
+                            "ON CONFLICT(day, service_id) DO UPDATE SET count = count + 1; " +
+                            "END",
+                    "CREATE TRIGGER appointment_counts_delete AFTER DELETE ON appointments BEGIN " +
+                            "UPDATE appointment_counts SET count = count - 1 " +
+                            "WHERE day = OLD.start_minute / 1440 AND service_id = COALESCE(OLD.service_id, 0); " +
+                            "END",
+                    "CREATE TRIGGER appointment_counts_update AFTER UPDATE OF start_minute, service_id ON appointments BEGIN " +
+                            "UPDATE appointment_counts SET count = count - 1 " +
+                            "WHERE day = OLD.start_minute / 1440 AND service_id = COALESCE(OLD.service_id, 0); " +
+                            "INSERT INTO appointment_counts (day, service_id, count) " +
+                            "VALUES (NEW.start_minute / 1440, COALESCE(NEW.service_id, 0), 1) " +
+                            "ON CONFLICT(day, service_id) DO UPDATE SET count = count + 1; " +
+                            "END"
+            },
+            // 4: resurslar (kreslo/shifokor, ClinicCalendar). Bitta vaqtga har bir resursda bittadan navbat:
+            // UNIQUE(start_minute) -> UNIQUE(resource_id, start_minute). Mavjud navbatlar 1-resursga yoziladi.
+            // SQLite UNIQUE cheklovini o'chira olmaydi, shuning uchun jadval qayta quriladi; eski jadval bilan
+            // birga o'chgan indeks va triggerlar qayta yaratiladi
+            {
+                    "ALTER TABLE appointments RENAME TO appointments_v3",
+                    "CREATE TABLE appointments (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "chat_id INTEGER NOT NULL, " +
+                            "full_name TEXT, " +
+                            "phone TEXT, " +
+                            "service_id INTEGER, " +
+                            "resource_id INTEGER NOT NULL DEFAULT 1, " +
+                            "start_minute INTEGER NOT NULL, " +
+                            "reminder_sent_1day INTEGER NOT NULL DEFAULT 0, " +
+                            "reminder_sent_2hours INTEGER NOT NULL DEFAULT 0, " +
+                            "reminder_sent_30min INTEGER NOT NULL DEFAULT 0, " +
+                            "UNIQUE(resource_id, start_minute), " +
+                            "FOREIGN KEY(service_id) REFERENCES services(id))",
+                    "INSERT INTO appointments (id, chat_id, full_name, phone, service_id, resource_id, start_minute, " +
+                            "reminder_sent_1day, reminder_sent_2hours, reminder_sent_30min) " +
+                            "SELECT id, chat_id, full_name, phone, service_id, 1, start_minute, " +
+                            "reminder_sent_1day, reminder_sent_2hours, reminder_sent_30min FROM appointments_v3",
+                    "UPDATE sqlite_sequence SET seq = (SELECT seq FROM sqlite_sequence WHERE name = 'appointments_v3') " +
+                            "WHERE name = 'appointments' AND EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'appointments_v3')",
+                    "INSERT INTO sqlite_sequence (name, seq) SELECT 'appointments', seq FROM sqlite_sequence " +
+                            "WHERE name = 'appointments_v3' " +
+                            "AND NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'appointments')",
+                    "DROP TABLE appointments_v3",
+                    // Vaqt oralig'i so'rovlari (sahifalash, eslatmalar, indeks yuklash) endi resursdan qat'i nazar
+                    "CREATE INDEX idx_appointments_start ON appointments (start_minute)",
+                    "CREATE INDEX idx_appointments_chat_start ON appointments (chat_id, start_minute)",
+                    "CREATE INDEX idx_appointments_service_start ON appointments (service_id, start_minute)",
+                    "CREATE TRIGGER appointment_counts_insert AFTER INSERT ON appointments BEGIN " +
+                            "INSERT INTO appointment_counts (day, service_id, count) " +
+                            "VALUES (NEW.start_minute / 1440, COALESCE(NEW.service_id, 0), 1) " +
+                            "ON CONFLICT(day, service_id) DO UPDATE SET count = count + 1; " +
+                            "END",
+                    "CREATE TRIGGER appointment_counts_delete AFTER DELETE ON appointments BEGIN " +
+                            "UPDATE appointment_counts SET count = count - 1 " +
+                            "WHERE day = OLD.start_minute / 1440 AND service_id = COALESCE(OLD.service_id, 0); " +
+                            "END",
+                    "CREATE TRIGGER appointment_counts_update AFTER UPDATE OF start_minute, service_id ON appointments BEGIN " +
+                            "UPDATE appointment_counts SET count = count - 1 " +
+                            "WHERE day = OLD.start_minute / 1440 AND service_id = COALESCE(OLD.service_id, 0); " +
+                            "INSERT INTO appointment_counts (day, service_id, count) " +
+                            "VALUES (NEW.start_minute / 1440, COALESCE(NEW.service_id, 0), 1) " +
+                            "ON CONFLICT(day, service_id) DO UPDATE SET count = count + 1; " +
+                            "END"
+            },
+            // 5: xizmat davomiyligi. Navbat [start_minute, end_minute) oralig'ini egallaydi; mavjud navbatlar
+            // 30 daqiqalik bo'lib qoladi. Standart xizmatlarga taxminiy davomiylik beriladi
+            {
+                    "ALTER TABLE services ADD COLUMN duration_minutes INTEGER NOT NULL DEFAULT 30",
+                    "UPDATE services SET duration_minutes = 60 WHERE name IN ('Tish oldirish', 'Plomba qilish')",
+                    "UPDATE services SET duration_minutes = 90 WHERE name = 'Tish qo''ydirish'",
+                    "ALTER TABLE appointments ADD COLUMN end_minute INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE appointments SET end_minute = start_minute + 30"
+            },
+            // 6: suhbat holatlari (UserStateStore): chat_id -> JSON, qayta ishga tushganda tiklanadi
+            {
+                    "CREATE TABLE user_states (" +
+                            "chat_id INTEGER PRIMARY KEY, " +
+                            "state TEXT NOT NULL, " +
+                            "updated_at INTEGER NOT NULL)",
+                    "CREATE INDEX idx_user_states_updated ON user_states (updated_at)"
+            }
+    };
+
+    private void initDatabase() throws SQLException {
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
 
-            // Faqat mavjud bo'lmagan jadvallarni yaratish
-            stmt.execute("CREATE TABLE IF NOT EXISTS services (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "name TEXT UNIQUE NOT NULL, " +
-                    "min_price INTEGER NOT NULL, " +
-                    "max_price INTEGER NOT NULL, " +
-                    "active BOOLEAN DEFAULT 1)");
-
-            stmt.execute("CREATE TABLE IF NOT EXISTS appointments (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "chat_id LONG NOT NULL, " +
-                    "full_name TEXT, " +
-                    "phone TEXT, " +
-                    "service_id INTEGER, " +
-                    "appointment_time TEXT UNIQUE, " +
-                    "reminder_sent_1day BOOLEAN DEFAULT 0, " +
-                    "reminder_sent_2hours BOOLEAN DEFAULT 0, " +
-                    "reminder_sent_30min BOOLEAN DEFAULT 0, " +
-                    "FOREIGN KEY(service_id) REFERENCES services(id))");
+            migrate(conn, stmt);
+            reportUnparsedAppointments(stmt);
 
             // Default services - faqat agar mavjud bo'lmasa
             initDefaultServices(conn);
+        }
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // 2-migratsiyada ko'chirilmagan navbatlar: jadval bo'shatilmaguncha har ishga tushishda eslatiladi
+    private void reportUnparsedAppointments(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master " +
+                "WHERE type = 'table' AND name = 'appointments_unparsed'")) {
+            if (!rs.next() || rs.getInt(1) == 0) {
+                return;
+            }
+        }
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM appointments_unparsed")) {
+            int count = rs.next() ? rs.getInt(1) : 0;
+            if (count > 0) {
+                System.err.println("Ogohlantirish: vaqti o'qilmagan " + count + " ta navbat appointments jadvaliga " +
+                        "ko'chirilmadi, appointments_unparsed jadvalida saqlangan");
+            }
+        }
+    }
+
+    private void migrate(Connection conn, Statement stmt) throws SQLException {
+        int version;
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+
+        for (; version < MIGRATIONS.length; version++) {
+            conn.setAutoCommit(false);
+            try {
+                for (String sql : MIGRATIONS[version]) {
+                    stmt.execute(sql);
+                }
+                stmt.execute("PRAGMA user_version = " + (version + 1));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Migratsiya " + (version + 1) + " bajarilmadi: " + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            System.out.println("Ma'lumotlar bazasi " + (version + 1) + "-versiyaga yangilandi");
         }
     }
 
@@ -61,12 +334,12 @@ public class DatabaseManager {
 
             if (rs.next() && rs.getInt(1) == 0) {
                 // Faqat bo'sh bo'lsa default ma'lumotlarni qo'shish
-                String insertSql = "INSERT INTO services (name, min_price, max_price) VALUES (?, ?, ?)";
+                String insertSql = "INSERT INTO services (name, min_price, max_price, duration_minutes) VALUES (?, ?, ?, ?)";
                 String[][] defaultServices = {
-                        {"Tish oldirish", "50000", "150000"},
-                        {"Plomba qilish", "150000", "300000"},
-                        {"Tish qo'ydirish", "2000000", "3000000"},
-                        {"Maslahat olish", "0", "0"}
+                        {"Tish oldirish", "50000", "150000", "60"},
+                        {"Plomba qilish", "150000", "300000", "60"},
+                        {"Tish qo'ydirish", "2000000", "3000000", "90"},
+                        {"Maslahat olish", "0", "0", "30"}
                 };
 
                 try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
@@ -74,6 +347,7 @@ public class DatabaseManager {
                         pstmt.setString(1, service[0]);
                         pstmt.setInt(2, Integer.parseInt(service[1]));
                         pstmt.setInt(3, Integer.parseInt(service[2]));
+                        pstmt.setInt(4, Integer.parseInt(service[3]));
                         pstmt.executeUpdate();
                     }
                 }
@@ -82,4 +356,243 @@ public class DatabaseManager {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    // Pool ichidagi doimiy ulanish va uning PreparedStatement keshi.
+    // Bir vaqtda faqat bitta oqimga beriladi, shuning uchun kesh sinxronizatsiyasiz.
+    // Ichma-ich ijaralar (yozuvchi tranzaksiya ichida getConnection) bitta SQL'ni ikki marta tayyorlasa,
+    // ikkinchisiga keshsiz alohida statement beriladi - ichkisining close() i tashqisining
+    // parametrlari va batch'ini tozalab yubormasligi uchun.
+    private static class PooledConnection {
+        private final Connection raw;
+        // Hozir ijarada turgan statement'lar
+        private final Set<PreparedStatement> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<>(STATEMENT_CACHE_SIZE, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > STATEMENT_CACHE_SIZE) {
+                            // Ishlatilayotgani ijara tugaganda yopiladi
+                            if (!inUse.contains(eldest.getValue())) {
+                                closeQuietly(eldest.getValue());
+                            }
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        Connection lease(boolean outermost, Runnable release) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeasedConnection(outermost, release));
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement != null && inUse.contains(statement)) {
+                statement = raw.prepareStatement(sql);
+            } else if (statement == null || statement.isClosed()) {
+                statement = raw.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            inUse.add(statement);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new CachedStatement(statement, queryMetric(sql), this::release));
+        }
+
+        // Keshda qolgan statement qayta ishlatiladi; keshsiz yoki keshdan chiqarilgani yopiladi
+        private void release(PreparedStatement statement) {
+            inUse.remove(statement);
+            if (!statements.containsValue(statement)) {
+                closeQuietly(statement);
+            }
+        }
+
+        // Ijaraga berilgan ulanish: close() uni pool'ga qaytaradi
+        private class LeasedConnection implements InvocationHandler {
+            private final boolean outermost;
+            private final Runnable release;
+            private boolean closed;
+
+            LeasedConnection(boolean outermost, Runnable release) {
+                this.outermost = outermost;
+                this.release = release;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            try {
+                                // Yakunlanmagan tranzaksiya keyingi foydalanuvchiga o'tmasligi kerak
+                                if (outermost && !raw.getAutoCommit()) {
+                                    raw.rollback();
+                                    raw.setAutoCommit(true);
+                                }
+                            } finally {
+                                release.run();
+                            }
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || raw.isClosed();
+                    case "prepareStatement":
+                        if (args.length == 1) {
+                            checkOpen();
+                            return prepare((String) args[0]);
+                        }
+                        break;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "PooledConnection[" + raw + "]";
+                }
+                checkOpen();
+                return invokeRaw(raw, method, args);
+            }
+
+            private void checkOpen() throws SQLException {
+                if (closed) {
+                    throw new SQLException("Ulanish pool'ga qaytarilgan");
+                }
+            }
+        }
+    }
+
+    // So'rov joyi nomi (metrika label'i va iz span'i) va uning histogrammasi
+    private static final class QueryMetric {
+        final String spanName;
+        final Metrics.Histogram latency;
+
+        QueryMetric(String name) {
+            this.spanName = "db " + name;
+            this.latency = QUERY_LATENCY.labels(name);
+        }
+
+        void observe(long startNanos) {
+            latency.observeSince(startNanos);
+            Trace.span(spanName, startNanos);
+        }
+    }
+
+    // Keshdagi PreparedStatement: close() faqat parametrlarni, batch'ni va ochiq ResultSet'ni tozalaydi
+    private static class CachedStatement implements InvocationHandler {
+        private final PreparedStatement raw;
+        private final QueryMetric metric;
+        private final Consumer<PreparedStatement> release;
+        private ResultSet openResult;
+        // SQLite qatorlarni next() da hisoblaydi - SELECT vaqti ResultSet yopilguncha o'lchanadi
+        private long queryStarted;
+        private boolean closed;
+
+        CachedStatement(PreparedStatement raw, QueryMetric metric, Consumer<PreparedStatement> release) {
+            this.raw = raw;
+            this.metric = metric;
+            this.release = release;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            if (openResult != null) {
+                                openResult.close();
+                                openResult = null;
+                            }
+                            finishQuery();
+                            raw.clearParameters();
+                            // Bajarilmay qolgan batch keyingi foydalanuvchining executeBatch() ida ishlab ketmasin
+                            raw.clearBatch();
+                        } finally {
+                            release.accept(raw);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "executeQuery":
+                    finishQuery();
+                    queryStarted = System.nanoTime();
+                    openResult = (ResultSet) invokeRaw(raw, method, args);
+                    return openResult;
+                case "execute":
+                case "executeUpdate":
+                case "executeBatch":
+                    long started = System.nanoTime();
+                    try {
+                        return invokeRaw(raw, method, args);
+                    } finally {
+                        metric.observe(started);
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            return invokeRaw(raw, method, args);
+        }
+
+        private void finishQuery() {
+            if (queryStarted != 0) {
+                metric.observe(queryStarted);
+                queryStarted = 0;
+            }
+        }
+    }
+
+    private static QueryMetric queryMetric(String sql) {
+        QueryMetric metric = QUERY_METRICS.get(sql);
+        return metric != null ? metric : QUERY_METRICS.computeIfAbsent(sql, key -> new QueryMetric(caller()));
+    }
+
+    // Ulanish proxy'sidan tashqaridagi birinchi dastur metodi - so'rovni yozgan repository metodi
+    private static String caller() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("com.example.dentalbot.")
+                        && !frame.getClassName().startsWith(DatabaseManager.class.getName()))
+                .findFirst()
+                .map(DatabaseManager::queryLabel)
+                .orElse("DatabaseManager"));
+    }
+
+    // "AppointmentRepository.getFreeSlots"; lambda ichidan bo'lsa o'rab turgan metod nomi
+    private static String queryLabel(StackWalker.StackFrame frame) {
+        String className = frame.getClassName();
+        String method = frame.getMethodName();
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', 7);
+            method = end > 7 ? method.substring(7, end) : method;
+        }
+        return className.substring(className.lastIndexOf('.') + 1) + "." + method;
+    }
+
+    private static Object invokeRaw(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.OutboundQueue;
+import com.example.dentalbot.util.Metrics;
+import com.example.dentalbot.util.TimeSlots;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+// Eslatmalar rejalashtiruvchisi. Har bir navbat uchun 1 kun, 2 soat va 30 daqiqa oldingi
+// eslatma vaqtlari oldindan hisoblanib DelayQueue'ga qo'yiladi; oqim keyingi eslatma
+// vaqtigacha uxlaydi. Navbat saqlanganda/bekor qilinganda navbat yangilanadi,
+// yuborilgan eslatmalar bayroqlari bitta batch UPDATE bilan belgilanadi.
+public class ReminderScheduler implements AppointmentRepository.AppointmentListener {
+    // Eslatma vaqti o'tib ketgan bo'lsa ham shu oraliqda yuboriladi (masalan, qayta ishga tushganda)
+    private static final long GRACE_MINUTES = 30;
+
+    enum Kind {
+        ONE_DAY(24 * 60, "reminder_sent_1day"),
+        TWO_HOURS(2 * 60, "reminder_sent_2hours"),
+        THIRTY_MINUTES(30, "reminder_sent_30min");
+
+        final int minutesBefore;
+        final String column;
+
+        Kind(int minutesBefore, String column) {
+            this.minutesBefore = minutesBefore;
+            this.column = column;
+        }
+    }
+
+    private static class Reminder implements Delayed {
+        final int appointmentId;
+        final Kind kind;
+        final long fireAtMinute;
+
+        Reminder(int appointmentId, Kind kind, long fireAtMinute) {
+            this.appointmentId = appointmentId;
+            this.kind = kind;
+            this.fireAtMinute = fireAtMinute;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMinute * 60_000 - localNowMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireAtMinute, ((Reminder) other).fireAtMinute);
+        }
+    }
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final OutboundQueue outbound;
+    private final DelayQueue<Reminder> queue = new DelayQueue<>();
+    private final Thread worker;
+    // load - ishga tushgandagi yuklash, fire - vaqti kelgan eslatmalar to'plamini yuborish
+    private final Metrics.HistogramFamily scanDuration = Metrics.getInstance().histogram(
+            "dentalbot_reminder_scan_seconds", "Eslatmalarni yuklash va yuborish vaqti", "phase");
+
+    public ReminderScheduler(OutboundQueue outbound) {
+        this.outbound = outbound;
+        this.worker = new Thread(this::run, "reminder-scheduler");
+        this.worker.setDaemon(true);
+    }
+
+    public void start() {
+        long started = System.nanoTime();
+        loadPending();
+        scanDuration.labels("load").observeSince(started);
+        worker.start();
+    }
+
+    public void stop() {
+        worker.interrupt();
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @Override
+    public void appointmentSaved(AppointmentRepository.Appointment appointment) {
+        long start = TimeSlots.epochMinute(appointment.getAppointmentTime());
+        for (Kind kind : Kind.values()) {
+            schedule(appointment.getId(), kind, start);
+        }
+    }
+
+    @Override
+    public void appointmentDeleted(AppointmentRepository.Appointment appointment) {
+        queue.removeIf(reminder -> reminder.appointmentId == appointment.getId());
+    }
+
+    private void schedule(int appointmentId, Kind kind, long startMinute) {
+        long fireAt = startMinute - kind.minutesBefore;
+        if (fireAt + GRACE_MINUTES > TimeSlots.epochMinute(LocalDateTime.now())) {
+            queue.add(new Reminder(appointmentId, kind, fireAt));
+        }
+    }
+
+    // Ishga tushganda: hali yuborilmagan eslatmalari bor kelgusi navbatlar
+    void loadPending() {
+        String sql = "SELECT id, start_minute, reminder_sent_1day, reminder_sent_2hours, reminder_sent_30min " +
+                "FROM appointments WHERE start_minute > ? " +
+                "AND (reminder_sent_1day = 0 OR reminder_sent_2hours = 0 OR reminder_sent_30min = 0)";
+
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, TimeSlots.epochMinute(LocalDateTime.now()));
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                long start = rs.getLong("start_minute");
+                for (Kind kind : Kind.values()) {
+                    if (!rs.getBoolean(kind.column)) {
+                        schedule(id, kind, start);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Reminder> due = new ArrayList<>();
+                due.add(queue.take());
+                queue.drainTo(due);
+                long started = System.nanoTime();
+                fire(due);
+                scanDuration.labels("fire").observeSince(started);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void fire(List<Reminder> due) {
+        Map<Kind, List<Integer>> sent = new EnumMap<>(Kind.class);
+        long now = TimeSlots.epochMinute(LocalDateTime.now());
+
+        String sql = "SELECT a.chat_id, a.full_name, a.start_minute, s.name as service_name " +
+                "FROM appointments a LEFT JOIN services s ON a.service_id = s.id WHERE a.id = ?";
+
+        for (Reminder reminder : due) {
+            if (reminder.fireAtMinute + GRACE_MINUTES <= now) {
+                continue;
+            }
+            try (Connection conn = dbManager.getReadConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                pstmt.setInt(1, reminder.appointmentId);
+                ResultSet rs = pstmt.executeQuery();
+
+                // Navbat bekor qilingan bo'lsa yozuv topilmaydi
+                if (rs.next()) {
+                    sendReminder(rs.getLong("chat_id"), reminderText(reminder.kind,
+                            rs.getString("full_name"),
+                            rs.getString("service_name"),
+                            TimeSlots.format(rs.getLong("start_minute"))));
+                    sent.computeIfAbsent(reminder.kind, kind -> new ArrayList<>()).add(reminder.appointmentId);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        markSent(sent);
+    }
+
+    private String reminderText(Kind kind, String fullName, String serviceName, String appointmentTime) {
+        switch (kind) {
+            case ONE_DAY:
+                return "⏰ Eslatma: Hurmatli " + fullName +
+                        ", sizning " + serviceName + " navbatingizga 1 kun qoldi." +
+                        "\n🕒 Sana: " + appointmentTime +
+                        "\n\n📍 Manzil: Samarqand, Urgut tumani, Qora tepa" +
+                        "\n📞 Telefon: +998 91 034 33 55";
+            case TWO_HOURS:
+                return "⏰ Eslatma: Hurmatli " + fullName +
+                        ", sizning " + serviceName + " navbatingizga 2 soat qoldi." +
+                        "\n🕒 Sana: " + appointmentTime;
+            default:
+                return "⏰ Eslatma: Hurmatli " + fullName +
+                        ", sizning " + serviceName + " navbatingizga 30 daqiqa qoldi." +
+                        "\n🕒 Sana: " + appointmentTime +
+                        "\n\n❗ Iltimos, vaqtida kelishingizni so'raymiz.";
+        }
+    }
+
+    // Har bir eslatma turi uchun bitta batch UPDATE, hammasi bitta tranzaksiyada
+    private void markSent(Map<Kind, List<Integer>> sent) {
+        if (sent.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+            for (Map.Entry<Kind, List<Integer>> entry : sent.entrySet()) {
+                String sql = "UPDATE appointments SET " + entry.getKey().column + " = 1 WHERE id = ?";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int id : entry.getValue()) {
+                        pstmt.setInt(1, id);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // Tranzaksiya qaytarildi: bu eslatmalar qayta ishga tushganda loadPending() orqali yana yuboriladi
+            System.err.println("Eslatmalar yuborilgan deb belgilanmadi (tur=[navbat id]): " + sent);
+        }
+    }
+
+    // Navbatga qo'yadi va darhol qaytadi - eslatmalar to'plami rejalashtiruvchini bloklamaydi
+    private void sendReminder(long chatId, String message) {
+        outbound.send(chatId, new SendMessage(String.valueOf(chatId), message));
+    }
+
+    private static long localNowMillis() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.toEpochSecond(ZoneOffset.UTC) * 1000 + now.getNano() / 1_000_000;
+    }
+}
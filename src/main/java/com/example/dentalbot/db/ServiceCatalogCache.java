@@ -0,0 +1,95 @@
+package com.example.dentalbot.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Xizmatlar katalogining o'zgarmas nusxasi (snapshot). Katalog oyiga bir necha marta o'zgaradi,
+// lekin deyarli har bir callback'da o'qiladi - shuning uchun o'qish bazaga bormaydi.
+// ServiceRepository add/update/delete muvaffaqiyatli bo'lganda yangi snapshot yuklanib, atomik almashtiriladi.
+public class ServiceCatalogCache {
+    private static ServiceCatalogCache instance;
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private volatile Snapshot snapshot;
+
+    public static final class Snapshot {
+        private final ServiceRepository.Service[] active;
+        private final List<ServiceRepository.Service> activeList;
+        // Faol bo'lmaganlari ham - eski navbatlardagi xizmat nomlari uchun
+        private final Map<Integer, ServiceRepository.Service> byId;
+
+        private Snapshot(List<ServiceRepository.Service> all) {
+            Map<Integer, ServiceRepository.Service> map = new HashMap<>();
+            List<ServiceRepository.Service> activeServices = new ArrayList<>();
+            for (ServiceRepository.Service service : all) {
+                map.put(service.getId(), service);
+                if (service.isActive()) {
+                    activeServices.add(service);
+                }
+            }
+            this.active = activeServices.toArray(new ServiceRepository.Service[0]);
+            this.activeList = List.of(active);
+            this.byId = Map.copyOf(map);
+        }
+
+        public List<ServiceRepository.Service> activeServices() {
+            return activeList;
+        }
+
+        public ServiceRepository.Service get(int id) {
+            return byId.get(id);
+        }
+    }
+
+    private ServiceCatalogCache() {
+    }
+
+    public static synchronized ServiceCatalogCache getInstance() {
+        if (instance == null) {
+            instance = new ServiceCatalogCache();
+        }
+        return instance;
+    }
+
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    public synchronized Snapshot reload() {
+        List<ServiceRepository.Service> services = new ArrayList<>();
+        String sql = "SELECT * FROM services ORDER BY id";
+
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                services.add(new ServiceRepository.Service(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getInt("min_price"),
+                        rs.getInt("max_price"),
+                        rs.getInt("duration_minutes"),
+                        rs.getBoolean("active")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // Oldingi snapshot bo'lsa o'shani ishlatishda davom etamiz
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+
+        Snapshot loaded = new Snapshot(services);
+        snapshot = loaded;
+        return loaded;
+    }
+}
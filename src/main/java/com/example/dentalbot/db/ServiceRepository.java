@@ -1,24 +1,28 @@
 package com.example.dentalbot.db;
 
+import com.example.dentalbot.util.TimeSlots;
+
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
 
 public class ServiceRepository {
     private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final ServiceCatalogCache catalog = ServiceCatalogCache.getInstance();
 
     public static class Service {
         private int id;
         private String name;
         private int minPrice;  // Yangi: minimum narx
         private int maxPrice;  // Yangi: maksimum narx
+        private int durationMinutes;  // Navbat egallaydigan vaqt (TimeSlots.SLOT_MINUTES ga karrali)
         private boolean active;
 
-        public Service(int id, String name, int minPrice, int maxPrice, boolean active) {
+        public Service(int id, String name, int minPrice, int maxPrice, int durationMinutes, boolean active) {
             this.id = id;
             this.name = name;
             this.minPrice = minPrice;
             this.maxPrice = maxPrice;
+            this.durationMinutes = durationMinutes;
             this.active = active;
         }
 
@@ -38,6 +42,15 @@ public class ServiceRepository {
             return maxPrice;
         }  // Yangi
 
+        public int getDurationMinutes() {
+            return durationMinutes;
+        }
+
+        // Davomiylik slotlarda, yuqoriga yaxlitlangan (kamida 1)
+        public int getDurationSlots() {
+            return Math.max(1, (durationMinutes + TimeSlots.SLOT_MINUTES - 1) / TimeSlots.SLOT_MINUTES);
+        }
+
         public boolean isActive() {
             return active;
         }
@@ -51,55 +64,21 @@ public class ServiceRepository {
         }
     }
 
+    // Faol xizmatlar (o'zgarmas ro'yxat), ServiceCatalogCache'dan
     public List<Service> getAllServices() {
-        List<Service> services = new ArrayList<>();
-        String sql = "SELECT * FROM services WHERE active = 1 ORDER BY id";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-
-            while (rs.next()) {
-                services.add(new Service(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getInt("min_price"),  // Yangi
-                        rs.getInt("max_price"),  // Yangi
-                        rs.getBoolean("active")
-                ));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return services;
+        return catalog.snapshot().activeServices();
     }
 
     public Service getServiceById(int id) {
-        String sql = "SELECT * FROM services WHERE id = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, id);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return new Service(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getInt("min_price"),  // Yangi
-                        rs.getInt("max_price"),  // Yangi
-                        rs.getBoolean("active")
-                );
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return catalog.snapshot().get(id);
     }
 
     public boolean addService(String name, int minPrice, int maxPrice) {  // Yangi
-        String sql = "INSERT INTO services (name, min_price, max_price) VALUES (?, ?, ?)";
+        return addService(name, minPrice, maxPrice, TimeSlots.SLOT_MINUTES);
+    }
+
+    public boolean addService(String name, int minPrice, int maxPrice, int durationMinutes) {
+        String sql = "INSERT INTO services (name, min_price, max_price, duration_minutes) VALUES (?, ?, ?, ?)";
 
         try (Connection conn = dbManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -107,12 +86,14 @@ public class ServiceRepository {
             pstmt.setString(1, name);
             pstmt.setInt(2, minPrice);
             pstmt.setInt(3, maxPrice);
+            pstmt.setInt(4, durationMinutes);
             pstmt.executeUpdate();
-            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
+        catalog.reload();
+        return true;
     }
 
     public boolean updateService(int id, String name, int minPrice, int maxPrice) {  // Yangi
@@ -126,11 +107,12 @@ public class ServiceRepository {
             pstmt.setInt(3, maxPrice);
             pstmt.setInt(4, id);
             pstmt.executeUpdate();
-            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
+        catalog.reload();
+        return true;
     }
 
 
@@ -143,10 +125,11 @@ public class ServiceRepository {
 
             pstmt.setInt(1, id);
             pstmt.executeUpdate();
-            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
+        catalog.reload();
+        return true;
     }
 }
\ No newline at end of file
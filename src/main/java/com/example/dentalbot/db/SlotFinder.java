@@ -0,0 +1,156 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.util.ClinicCalendar;
+import com.example.dentalbot.util.TimeSlots;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Bo'sh vaqt qidirish: har bir resurs uchun bo'sh slotlar = ish vaqti & ~band. Davomiyligi d slot bo'lgan
+// xizmat s-slotda boshlanishi uchun s..s+d-1 slotlarning hammasi bo'sh bo'lishi kerak:
+// starts = free & free>>>1 & ... & free>>>(d-1). Kunlik maska = OR(resurslar) & hozirdan keyin.
+// Tanlangan vaqtdan ikki tomonga (oldinga va orqaga) kunma-kun yuriladi, kun ichida bitlar
+// numberOfTrailingZeros / numberOfLeadingZeros bilan sakrab o'tiladi - har bir slot uchun alohida so'rov yo'q.
+public class SlotFinder {
+    private final AvailabilityIndex availability;
+    private final ClinicCalendar calendar;
+
+    public SlotFinder(AvailabilityIndex availability, ClinicCalendar calendar) {
+        this.availability = availability;
+        this.calendar = calendar;
+    }
+
+    // Davomiyligi durationSlots bo'lgan navbat boshlanishi mumkin bo'lgan slotlar (TimeSlots bitmask)
+    public long freeSlots(LocalDate date, int durationSlots) {
+        return freeSlots(date, durationSlots, LocalDateTime.now());
+    }
+
+    // preferred ga eng yaqin count ta bo'sh vaqt (oldin ham, keyin ham), vaqt bo'yicha tartiblangan.
+    // Qidiruv bugundan calendar.horizonDays() kun ichida; preferred ning o'zi kirmaydi.
+    public List<LocalDateTime> nearestFree(LocalDateTime preferred, int durationSlots, int count) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        LocalDate lastDay = today.plusDays(calendar.horizonDays() - 1);
+        LocalDate preferredDay = preferred.toLocalDate();
+        int preferredSlot = TimeSlots.slotOf(preferred.toLocalTime());
+
+        // Keyingi vaqtlar - yaqinidan uzog'iga
+        List<Long> after = new ArrayList<>(count);
+        LocalDate day = preferredDay.isBefore(today) ? today : preferredDay;
+        for (; !day.isAfter(lastDay) && after.size() < count; day = day.plusDays(1)) {
+            long mask = freeSlots(day, durationSlots, now);
+            if (day.equals(preferredDay)) {
+                mask &= -1L << (preferredSlot + 1);
+            }
+            long dayStart = TimeSlots.epochMinute(day);
+            while (mask != 0 && after.size() < count) {
+                int slot = Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                after.add(dayStart + (long) slot * TimeSlots.SLOT_MINUTES);
+            }
+        }
+
+        // Oldingi vaqtlar - yaqinidan uzog'iga
+        List<Long> before = new ArrayList<>(count);
+        day = preferredDay.isAfter(lastDay) ? lastDay : preferredDay;
+        for (; !day.isBefore(today) && before.size() < count; day = day.minusDays(1)) {
+            long mask = freeSlots(day, durationSlots, now);
+            if (day.equals(preferredDay)) {
+                mask &= (1L << preferredSlot) - 1;
+            }
+            long dayStart = TimeSlots.epochMinute(day);
+            while (mask != 0 && before.size() < count) {
+                int slot = 63 - Long.numberOfLeadingZeros(mask);
+                mask &= ~(1L << slot);
+                before.add(dayStart + (long) slot * TimeSlots.SLOT_MINUTES);
+            }
+        }
+
+        // Ikki ro'yxatni masofa bo'yicha birlashtirish
+        long target = TimeSlots.epochMinute(preferred);
+        List<LocalDateTime> result = new ArrayList<>(count);
+        int a = 0;
+        int b = 0;
+        while (result.size() < count && (a < after.size() || b < before.size())) {
+            boolean takeAfter = b >= before.size()
+                    || (a < after.size() && after.get(a) - target <= target - before.get(b));
+            long minute = takeAfter ? after.get(a++) : before.get(b++);
+            result.add(TimeSlots.fromEpochMinute(minute));
+        }
+        result.sort(null);
+        return result;
+    }
+
+    // preferred dan keyingi birinchi bo'sh vaqt yoki null
+    public LocalDateTime firstFreeAfter(LocalDateTime preferred, int durationSlots) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate lastDay = now.toLocalDate().plusDays(calendar.horizonDays() - 1);
+        int preferredSlot = TimeSlots.slotOf(preferred.toLocalTime());
+
+        for (LocalDate day = preferred.toLocalDate(); !day.isAfter(lastDay); day = day.plusDays(1)) {
+            long mask = freeSlots(day, durationSlots, now);
+            if (day.equals(preferred.toLocalDate())) {
+                mask &= -1L << (preferredSlot + 1);
+            }
+            if (mask != 0) {
+                return day.atTime(TimeSlots.timeOf(Long.numberOfTrailingZeros(mask)));
+            }
+        }
+        return null;
+    }
+
+    // [time, time + durationSlots) oralig'ida to'liq ishlaydigan va bo'sh resurslar id lari, kalendar tartibida
+    public List<Integer> freeResources(LocalDateTime time, int durationSlots) {
+        LocalDate date = time.toLocalDate();
+        int slot = TimeSlots.slotOf(time.toLocalTime());
+        List<Integer> free = new ArrayList<>(calendar.resourceCount());
+        List<ClinicCalendar.Resource> resources = calendar.resources();
+        for (int i = 0; i < resources.size(); i++) {
+            long open = calendar.openSlots(i, date);
+            if (open == 0) {
+                continue;
+            }
+            int resourceId = resources.get(i).getId();
+            long starts = startSlots(open & ~availability.bookedSlots(resourceId, date), durationSlots);
+            if (TimeSlots.isSet(starts, slot)) {
+                free.add(resourceId);
+            }
+        }
+        return free;
+    }
+
+    private long freeSlots(LocalDate date, int durationSlots, LocalDateTime now) {
+        int comparison = date.compareTo(now.toLocalDate());
+        if (comparison < 0 || calendar.openSlots(date) == 0) {
+            return 0L;
+        }
+        // Slot bo'sh, agar unda ishlaydigan resurslardan kamida bittasi butun davomiylik uchun bo'sh bo'lsa
+        long mask = 0L;
+        List<ClinicCalendar.Resource> resources = calendar.resources();
+        for (int i = 0; i < resources.size(); i++) {
+            long open = calendar.openSlots(i, date);
+            if (open != 0) {
+                mask |= startSlots(open & ~availability.bookedSlots(resources.get(i).getId(), date), durationSlots);
+            }
+        }
+        if (comparison == 0) {
+            // Boshlanib bo'lgan va o'tgan slotlar taklif qilinmaydi
+            int minuteOfDay = now.getHour() * 60 + now.getMinute();
+            int firstSlot = minuteOfDay / TimeSlots.SLOT_MINUTES + 1;
+            mask &= firstSlot >= 64 ? 0L : -1L << firstSlot;
+        }
+        return mask;
+    }
+
+    // free maskasida ketma-ket durationSlots ta bo'sh slot boshlanadigan bitlar
+    // (open maskasi 48-slotdan keyin 0, shuning uchun kun oxiridan oshib ketmaydi)
+    static long startSlots(long free, int durationSlots) {
+        long starts = free;
+        for (int k = 1; k < durationSlots && starts != 0; k++) {
+            starts &= free >>> k;
+        }
+        return starts;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.dentalbot.db;
+
+import com.example.dentalbot.util.TimeSlots;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// "Mening navbatlarim" ekrani uchun chat bo'yicha kelgusi navbatlar keshi. Bitta so'rov natijasi saqlanadi;
+// shu chatning navbati saqlansa/o'chirilsa yozuv tashlanadi (AppointmentRepository.notifySaved/notifyDeleted).
+// O'tib ketgan navbatlar o'qishda filtrlanadi, shuning uchun yozuv vaqt o'tishi bilan eskirmaydi.
+// AppointmentRepository bir nechta joyda yaratiladi - kesh umumiy bo'lishi uchun singleton.
+class UserAppointmentsCache {
+    private static final int MAX_CHATS = 4096;
+    private static UserAppointmentsCache instance;
+
+    // Bitta navbat; xizmat nomi o'qishda katalogdan olinadi (nomi o'zgartirilsa ham to'g'ri chiqadi)
+    static final class Row {
+        final int id;
+        final String fullName;
+        final String phone;
+        final int serviceId;
+        final int resourceId;
+        final long startMinute;
+        final long endMinute;
+        // Har o'qishda formatlamaslik uchun
+        final String appointmentTime;
+
+        Row(int id, String fullName, String phone, int serviceId, int resourceId, long startMinute, long endMinute) {
+            this.id = id;
+            this.fullName = fullName;
+            this.phone = phone;
+            this.serviceId = serviceId;
+            this.resourceId = resourceId;
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+            this.appointmentTime = TimeSlots.format(startMinute);
+        }
+    }
+
+    private final LinkedHashMap<Long, List<Row>> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, List<Row>> eldest) {
+            return size() > MAX_CHATS;
+        }
+    };
+    // Har bir invalidate() da oshadi: so'rov paytida o'zgarish bo'lgan bo'lsa eski natija keshga yozilmaydi
+    private long generation;
+
+    private UserAppointmentsCache() {
+    }
+
+    static synchronized UserAppointmentsCache getInstance() {
+        if (instance == null) {
+            instance = new UserAppointmentsCache();
+        }
+        return instance;
+    }
+
+    // Vaqt bo'yicha tartiblangan qatorlar yoki null (keshda yo'q)
+    synchronized List<Row> get(long chatId) {
+        return cache.get(chatId);
+    }
+
+    // Bazadan o'qishdan oldin olinadi va put() ga beriladi
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized void put(long chatId, List<Row> rows, long loadedGeneration) {
+        if (loadedGeneration == generation) {
+            cache.put(chatId, List.copyOf(rows));
+        }
+    }
+
+    synchronized void invalidate(long chatId) {
+        generation++;
+        cache.remove(chatId);
+    }
+}
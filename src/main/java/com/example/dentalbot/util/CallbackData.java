@@ -0,0 +1,184 @@
+package com.example.dentalbot.util;
+
+import com.example.dentalbot.BotConfig;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Base64;
+
+// Parametrli tugmalar uchun ixcham, imzolangan callback ma'lumoti:
+// "#" + base64url( tur(1) | a(4) | b(4) | hmac(6) ) = 21 belgi - Telegram'ning 64 bayt limitidan ancha kam.
+// a va b turga qarab: xizmat/navbat id si, epoch-kun, epoch-minute, resurs (kreslo/shifokor) id si.
+// Imzo bot tokenidan olingan kalit bilan (HMAC-SHA256, 6 bayt): o'zgartirilgan yoki o'ylab topilgan
+// ma'lumot decode() da rad etiladi. Token almashsa eski tugmalar ham yaroqsiz bo'ladi.
+public final class CallbackData {
+    public static final char PREFIX = '#';
+    private static final int BODY_BYTES = 9;
+    private static final int MAC_BYTES = 6;
+    private static final int ENCODED_LENGTH = 1 + (BODY_BYTES + MAC_BYTES) / 3 * 4;
+
+    // Kod tugmalarda saqlanadi - mavjud turning kodini o'zgartirmang
+    public enum Type {
+        SERVICE(1),
+        QUEUE_REGISTER(2),
+        SHOW_DAY(3),
+        SELECT_TIME(4),
+        CONFIRM_TIME(5),
+        CANCEL(6),
+        EDIT_SERVICE(7),
+        STATS_MONTH(8);
+
+        private static final Type[] BY_CODE = new Type[16];
+
+        static {
+            for (Type type : values()) {
+                BY_CODE[type.code] = type;
+            }
+        }
+
+        private final int code;
+
+        Type(int code) {
+            this.code = code;
+        }
+    }
+
+    private static final SecretKeySpec KEY = new SecretKeySpec(
+            sha256("dentalbot-callback:" + BotConfig.BOT_TOKEN), "HmacSHA256");
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Type type;
+    private final int a;
+    private final int b;
+
+    private CallbackData(Type type, int a, int b) {
+        this.type = type;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static String service(int serviceId) {
+        return encode(Type.SERVICE, serviceId, 0);
+    }
+
+    public static String queueRegister(int serviceId) {
+        return encode(Type.QUEUE_REGISTER, serviceId, 0);
+    }
+
+    public static String showDay(LocalDate date) {
+        return encode(Type.SHOW_DAY, (int) date.toEpochDay(), 0);
+    }
+
+    // resourceId: 0 - istalgan bo'sh resurs
+    public static String selectTime(LocalDateTime time, int resourceId) {
+        return encode(Type.SELECT_TIME, (int) TimeSlots.epochMinute(time), resourceId);
+    }
+
+    public static String confirmTime(LocalDateTime time, int resourceId) {
+        return encode(Type.CONFIRM_TIME, (int) TimeSlots.epochMinute(time), resourceId);
+    }
+
+    public static String cancel(int appointmentId) {
+        return encode(Type.CANCEL, appointmentId, 0);
+    }
+
+    public static String editService(int serviceId) {
+        return encode(Type.EDIT_SERVICE, serviceId, 0);
+    }
+
+    public static String statsMonth(YearMonth month) {
+        return encode(Type.STATS_MONTH, month.getYear() * 12 + month.getMonthValue() - 1, 0);
+    }
+
+    public static boolean isPayload(String data) {
+        return data.length() == ENCODED_LENGTH && data.charAt(0) == PREFIX;
+    }
+
+    // Buzilgan, noma'lum turdagi yoki imzosi mos kelmaydigan ma'lumot uchun null
+    public static CallbackData decode(String data) {
+        if (!isPayload(data)) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(data.substring(1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // Doimiy vaqtli taqqoslash
+        byte[] expected = Arrays.copyOf(mac(bytes), MAC_BYTES);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(bytes, BODY_BYTES, bytes.length))) {
+            return null;
+        }
+
+        int code = bytes[0] & 0xFF;
+        Type type = code < Type.BY_CODE.length ? Type.BY_CODE[code] : null;
+        if (type == null) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.wrap(bytes, 1, BODY_BYTES - 1);
+        return new CallbackData(type, body.getInt(), body.getInt());
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    // Xizmat, navbat yoki resurs id si
+    public int id() {
+        return a;
+    }
+
+    public int resourceId() {
+        return b;
+    }
+
+    public LocalDate day() {
+        return LocalDate.ofEpochDay(a);
+    }
+
+    public LocalDateTime time() {
+        return TimeSlots.fromEpochMinute(a);
+    }
+
+    public YearMonth month() {
+        return YearMonth.of(a / 12, a % 12 + 1);
+    }
+
+    private static String encode(Type type, int a, int b) {
+        byte[] bytes = new byte[BODY_BYTES + MAC_BYTES];
+        ByteBuffer.wrap(bytes).put((byte) type.code).putInt(a).putInt(b);
+        System.arraycopy(mac(bytes), 0, bytes, BODY_BYTES, MAC_BYTES);
+        return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] mac(byte[] bytes) {
+        Mac mac = MAC.get();
+        mac.update(bytes, 0, BODY_BYTES);
+        return mac.doFinal();
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
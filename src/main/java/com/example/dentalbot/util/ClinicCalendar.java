@@ -0,0 +1,122 @@
+package com.example.dentalbot.util;
+
+import com.example.dentalbot.BotConfig;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.util.List;
+import java.util.Set;
+
+// Klinika kalendari: resurslar (kreslo/shifokor), ularning ish vaqti, tanaffuslari, dam olish va bayram kunlari.
+// Har bir resurs uchun hafta kunlari bo'yicha ochiq slotlar maskasi (TimeSlots bitmask) oldindan hisoblanadi -
+// kunlik so'rov bitta massiv o'qishi. Slot bo'sh hisoblanadi, agar unda ishlaydigan resurslardan biri bo'sh bo'lsa.
+public class ClinicCalendar {
+    // appointments.resource_id kaliti; AvailabilityIndex (epoch-minute, resurs) juftini bitta long'ga joylaydi
+    public static final int MAX_RESOURCES = 64;
+    private static ClinicCalendar instance;
+
+    // Resurs: id bazaga yoziladi, shuning uchun mavjud resursning id si o'zgartirilmaydi (1..63)
+    public static class Resource {
+        private final int id;
+        private final String name;
+        private final long workingDay;
+        private final Set<DayOfWeek> daysOff;
+        private long breaks;
+
+        public Resource(int id, String name, LocalTime workStart, LocalTime workEnd, Set<DayOfWeek> daysOff) {
+            if (id <= 0 || id >= MAX_RESOURCES) {
+                throw new IllegalArgumentException("Resurs id 1.." + (MAX_RESOURCES - 1) + " oralig'ida bo'lishi kerak: " + id);
+            }
+            this.id = id;
+            this.name = name;
+            this.workingDay = slotRange(workStart, workEnd);
+            this.daysOff = daysOff;
+        }
+
+        // Tanaffus [from, to) - bu vaqtda qabul yo'q
+        public Resource withBreak(LocalTime from, LocalTime to) {
+            breaks |= slotRange(from, to);
+            return this;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        long openSlots(DayOfWeek day) {
+            return daysOff.contains(day) ? 0L : workingDay & ~breaks;
+        }
+    }
+
+    private final List<Resource> resources;
+    private final Set<MonthDay> holidays;
+    private final int horizonDays;
+    // [resurs indeksi][hafta kuni] va barcha resurslar birlashmasi
+    private final long[][] resourceMasks;
+    private final long[] clinicMasks = new long[7];
+
+    ClinicCalendar(List<Resource> resources, Set<MonthDay> holidays, int horizonDays) {
+        if (resources.isEmpty()) {
+            throw new IllegalArgumentException("Kamida bitta resurs kerak");
+        }
+        this.resources = List.copyOf(resources);
+        this.holidays = holidays;
+        this.horizonDays = horizonDays;
+        this.resourceMasks = new long[resources.size()][7];
+        for (int i = 0; i < resources.size(); i++) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                long mask = resources.get(i).openSlots(day);
+                resourceMasks[i][day.getValue() - 1] = mask;
+                clinicMasks[day.getValue() - 1] |= mask;
+            }
+        }
+    }
+
+    public static synchronized ClinicCalendar getInstance() {
+        if (instance == null) {
+            instance = new ClinicCalendar(BotConfig.RESOURCES, BotConfig.HOLIDAYS, BotConfig.SLOT_SEARCH_HORIZON_DAYS);
+        }
+        return instance;
+    }
+
+    public List<Resource> resources() {
+        return resources;
+    }
+
+    public int resourceCount() {
+        return resources.size();
+    }
+
+    // Kunning kamida bitta resurs ishlaydigan slotlari; dam olish yoki bayram kunida 0
+    public long openSlots(LocalDate date) {
+        return holidays.contains(MonthDay.from(date)) ? 0L : clinicMasks[date.getDayOfWeek().getValue() - 1];
+    }
+
+    // resources() ro'yxatidagi index-chi resursning ish slotlari
+    public long openSlots(int index, LocalDate date) {
+        return holidays.contains(MonthDay.from(date)) ? 0L : resourceMasks[index][date.getDayOfWeek().getValue() - 1];
+    }
+
+    public boolean isOpen(LocalDate date) {
+        return openSlots(date) != 0;
+    }
+
+    // Bo'sh vaqt qidiriladigan kunlar soni (bugundan boshlab)
+    public int horizonDays() {
+        return horizonDays;
+    }
+
+    private static long slotRange(LocalTime from, LocalTime to) {
+        long mask = 0L;
+        for (int slot = TimeSlots.slotOf(from); slot < TimeSlots.slotOf(to); slot++) {
+            mask = TimeSlots.set(mask, slot);
+        }
+        return mask;
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.dentalbot.util;
 
+import com.example.dentalbot.BotConfig;
+import com.example.dentalbot.db.AppointmentRepository;
+import com.example.dentalbot.db.ServiceCatalogCache;
 import com.example.dentalbot.db.ServiceRepository;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
@@ -8,23 +11,100 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.Keyboard
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.function.Function;
 
 public class KeyboardFactory {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
     private static final ServiceRepository serviceRepo = new ServiceRepository();
 
+    // Mazmuni hech qachon o'zgarmaydigan klaviaturalar bir marta quriladi va qayta ishlatiladi
+    private static final ReplyKeyboardMarkup CONTACT_KEYBOARD = buildContactKeyboard();
+    private static final InlineKeyboardMarkup ADMIN_MENU = freeze(buildAdminMenu());
+    private static final InlineKeyboardMarkup SERVICE_MANAGEMENT_MENU = freeze(buildServiceManagementMenu());
+    private static final InlineKeyboardMarkup BACK_TO_MAIN_KEYBOARD = freeze(buildBackToMainKeyboard());
+    private static final InlineKeyboardMarkup STATS_KEYBOARD = freeze(buildStatsKeyboard());
+    private static final InlineKeyboardMarkup EMERGENCY_KEYBOARD = freeze(buildEmergencyKeyboard());
+    private static final InlineKeyboardMarkup SETTINGS_KEYBOARD = freeze(buildSettingsKeyboard());
+
+    // Xizmatlar ro'yxatiga bog'liq klaviaturalar - faqat katalog snapshot'i almashganda qayta quriladi
+    private static final CatalogKeyboard MAIN_MENU = new CatalogKeyboard(KeyboardFactory::buildMainMenu);
+    private static final CatalogKeyboard SERVICES_LIST_FOR_EDIT = new CatalogKeyboard(KeyboardFactory::buildServicesListForEdit);
+    private static final CatalogKeyboard SERVICES_KEYBOARD_WITH_ICONS = new CatalogKeyboard(KeyboardFactory::buildServicesKeyboardWithIcons);
+
+    private static final class CatalogKeyboard {
+        private final Function<List<ServiceRepository.Service>, InlineKeyboardMarkup> builder;
+        private volatile ServiceCatalogCache.Snapshot builtFrom;
+        private volatile InlineKeyboardMarkup markup;
+
+        CatalogKeyboard(Function<List<ServiceRepository.Service>, InlineKeyboardMarkup> builder) {
+            this.builder = builder;
+        }
+
+        InlineKeyboardMarkup get() {
+            ServiceCatalogCache.Snapshot snapshot = ServiceCatalogCache.getInstance().snapshot();
+            if (builtFrom != snapshot) {
+                synchronized (this) {
+                    if (builtFrom != snapshot) {
+                        markup = freeze(builder.apply(snapshot.activeServices()));
+                        builtFrom = snapshot;
+                    }
+                }
+            }
+            return markup;
+        }
+    }
+
     public static InlineKeyboardMarkup createMainMenu() {
+        return MAIN_MENU.get();
+    }
+
+    public static ReplyKeyboardMarkup createContactKeyboard() {
+        return CONTACT_KEYBOARD;
+    }
+
+    public static InlineKeyboardMarkup createAdminMenu() {
+        return ADMIN_MENU;
+    }
+
+    public static InlineKeyboardMarkup createServiceManagementMenu() {
+        return SERVICE_MANAGEMENT_MENU;
+    }
+
+    public static InlineKeyboardMarkup createServicesListForEdit() {
+        return SERVICES_LIST_FOR_EDIT.get();
+    }
+
+    public static InlineKeyboardMarkup createBackToMainKeyboard() {
+        return BACK_TO_MAIN_KEYBOARD;
+    }
+
+    public static InlineKeyboardMarkup createStatsKeyboard() {
+        return STATS_KEYBOARD;
+    }
+
+    public static InlineKeyboardMarkup createServicesKeyboardWithIcons() {
+        return SERVICES_KEYBOARD_WITH_ICONS.get();
+    }
+
+    public static InlineKeyboardMarkup createEmergencyKeyboard() {
+        return EMERGENCY_KEYBOARD;
+    }
+
+    public static InlineKeyboardMarkup createSettingsKeyboard() {
+        return SETTINGS_KEYBOARD;
+    }
+
+    static InlineKeyboardMarkup buildMainMenu(List<ServiceRepository.Service> services) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
-        var services = serviceRepo.getAllServices();
         for (var service : services) {
-            String callbackData = "service_" + service.getId();
+            String callbackData = CallbackData.service(service.getId());
             String buttonText = "🦷 " + service.getName();
             // NARX KO'RINMASLIGI KERAK - faqat xizmat nomi
             List<InlineKeyboardButton> row = new ArrayList<>();
@@ -40,7 +120,7 @@ public class KeyboardFactory {
         return markup;
     }
 
-    public static ReplyKeyboardMarkup createContactKeyboard() {
+    static ReplyKeyboardMarkup buildContactKeyboard() {
         ReplyKeyboardMarkup markup = new ReplyKeyboardMarkup();
         markup.setResizeKeyboard(true);
         markup.setOneTimeKeyboard(true);
@@ -57,20 +137,21 @@ public class KeyboardFactory {
         return markup;
     }
 
-    public static InlineKeyboardMarkup createAdminMenu() {
+    static InlineKeyboardMarkup buildAdminMenu() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
         rows.add(createButtonRow("📊 Statistika", "admin_stats"));
         rows.add(createButtonRow("🛠 Xizmatlarni boshqarish", "manage_services"));
         rows.add(createButtonRow("📋 Barcha navbatlar", "all_appointments"));
+        rows.add(createButtonRow("📥 Excel eksport", "apx_a"));
         rows.add(createButtonRow("🔙 Asosiy menyu", "main_menu"));
 
         markup.setKeyboard(rows);
         return markup;
     }
 
-    public static InlineKeyboardMarkup createServiceManagementMenu() {
+    static InlineKeyboardMarkup buildServiceManagementMenu() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
@@ -82,14 +163,13 @@ public class KeyboardFactory {
         return markup;
     }
 
-    public static InlineKeyboardMarkup createServicesListForEdit() {
+    static InlineKeyboardMarkup buildServicesListForEdit(List<ServiceRepository.Service> services) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
-        var services = serviceRepo.getAllServices();
         for (var service : services) {
             String buttonText = "✏️ " + service.getName() + " (" + service.getPriceRange() + ")";
-            rows.add(createButtonRow(buttonText, "edit_service_" + service.getId()));
+            rows.add(createButtonRow(buttonText, CallbackData.editService(service.getId())));
         }
 
         rows.add(createButtonRow("🔙 Orqaga", "manage_services"));
@@ -102,42 +182,28 @@ public class KeyboardFactory {
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
         LocalDate today = LocalDate.now();
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         DateTimeFormatter displayFormatter = DateTimeFormatter.ofPattern("MM/dd EEE");
 
-        // 14 kun (2 hafta) uchun
-        for (int i = 0; i < 14; i++) {
+        // BOOKING_DAYS kun ichidagi ish kunlari
+        for (int i = 0; i < BotConfig.BOOKING_DAYS; i++) {
             LocalDate date = today.plusDays(i);
+            if (!ClinicCalendar.getInstance().isOpen(date)) {
+                continue;
+            }
             String displayDate = date.format(displayFormatter);
-            rows.add(createButtonRow("📅 " + displayDate, "show_day_" + date.format(dateFormatter)));
+            rows.add(createButtonRow("📅 " + displayDate, CallbackData.showDay(date)));
         }
 
         markup.setKeyboard(rows);
         return markup;
     }
 
-    public static InlineKeyboardMarkup createTimesKeyboard(LocalDate date, Predicate<String> isBooked) {
+    // freeSlots - AppointmentRepository.getFreeSlots() qaytargan kunlik bitmask (xizmat boshlanishi mumkin bo'lgan slotlar)
+    public static InlineKeyboardMarkup createTimesKeyboard(LocalDate date, long freeSlots) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-
-        // YANGI: 8:00 dan 19:00 gacha
-        for (int hour = 8; hour <= 18; hour++) {
-            List<InlineKeyboardButton> row = new ArrayList<>();
-            for (int minute = 0; minute < 60; minute += 30) {
-                LocalDateTime slot = LocalDateTime.of(date, LocalTime.of(hour, minute));
-                String slotStr = slot.format(formatter);
-
-                if (slot.isAfter(LocalDateTime.now()) && !isBooked.test(slotStr)) {
-                    row.add(createInlineButton("⏰ " + slot.format(timeFormatter), "select_time_" + slotStr));
-                }
-            }
-            if (!row.isEmpty()) {
-                rows.add(row);
-            }
-        }
+        addTimeRows(rows, date, freeSlots, "⏰ ");
 
         if (rows.isEmpty()) {
             rows.add(createButtonRow("❌ Bu kunda bo'sh vaqt yo'q", "no_time"));
@@ -153,7 +219,7 @@ public class KeyboardFactory {
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
         List<InlineKeyboardButton> confirmRow = new ArrayList<>();
-        confirmRow.add(createInlineButton("✅ Tasdiqlash", "confirm_time_" + time));
+        confirmRow.add(createInlineButton("✅ Tasdiqlash", CallbackData.confirmTime(TimeSlots.parse(time), 0)));
         confirmRow.add(createInlineButton("❌ Bekor qilish", "reject_time"));
         rows.add(confirmRow);
 
@@ -162,6 +228,57 @@ public class KeyboardFactory {
         return markup;
     }
 
+    // Band vaqt o'rniga eng yaqin bo'sh vaqtlar (SlotFinder natijasi)
+    public static InlineKeyboardMarkup createAlternativeTimesKeyboard(List<String> times) {
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+
+        DateTimeFormatter displayFormatter = DateTimeFormatter.ofPattern("dd.MM EEE HH:mm");
+        for (String time : times) {
+            LocalDateTime slot = TimeSlots.parse(time);
+            rows.add(createButtonRow("🕒 " + slot.format(displayFormatter), CallbackData.selectTime(slot, 0)));
+        }
+
+        rows.add(createButtonRow("📅 Boshqa kun", "change_day"));
+        markup.setKeyboard(rows);
+        return markup;
+    }
+
+    // "Mening navbatlarim": har bir navbat uchun bekor qilish tugmasi; navbat bo'lmasa - faqat orqaga
+    public static InlineKeyboardMarkup createUserAppointmentsKeyboard(List<AppointmentRepository.Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return BACK_TO_MAIN_KEYBOARD;
+        }
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        for (AppointmentRepository.Appointment appointment : appointments) {
+            rows.add(createButtonRow("❌ Bekor qilish: " + appointment.getServiceName() + " - " + appointment.getAppointmentTime(),
+                    CallbackData.cancel(appointment.getId())));
+        }
+        rows.add(createButtonRow("🔙 Asosiy menyu", "main_menu"));
+        markup.setKeyboard(rows);
+        return markup;
+    }
+
+    // Bo'sh slotlar soat bo'yicha qatorlarga: bitlar ustida yuriladi, yopiq/band slotlar aylanmaydi
+    private static void addTimeRows(List<List<InlineKeyboardButton>> rows, LocalDate date,
+                                    long freeSlots, String icon) {
+        List<InlineKeyboardButton> row = new ArrayList<>();
+        int rowHour = -1;
+        for (long mask = freeSlots; mask != 0; mask &= mask - 1) {
+            LocalDateTime slot = LocalDateTime.of(date, TimeSlots.timeOf(Long.numberOfTrailingZeros(mask)));
+            if (slot.getHour() != rowHour && !row.isEmpty()) {
+                rows.add(row);
+                row = new ArrayList<>();
+            }
+            rowHour = slot.getHour();
+            row.add(createInlineButton(icon + slot.format(TIME_FORMAT), CallbackData.selectTime(slot, 0)));
+        }
+        if (!row.isEmpty()) {
+            rows.add(row);
+        }
+    }
+
     public static InlineKeyboardMarkup createServiceKeyboard(int serviceId) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -171,7 +288,7 @@ public class KeyboardFactory {
             rows.add(createButtonRow("🔙 Asosiy menyu", "main_menu"));
         } else {
             List<InlineKeyboardButton> row = new ArrayList<>();
-            row.add(createInlineButton("✅ Navbatga yozilish", "queue_register_" + serviceId));
+            row.add(createInlineButton("✅ Navbatga yozilish", CallbackData.queueRegister(serviceId)));
             row.add(createInlineButton("🔄 Boshqa xizmat", "change_service"));
             rows.add(row);
         }
@@ -180,7 +297,7 @@ public class KeyboardFactory {
         return markup;
     }
 
-    public static InlineKeyboardMarkup createBackToMainKeyboard() {
+    static InlineKeyboardMarkup buildBackToMainKeyboard() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
         rows.add(createButtonRow("🔙 Asosiy menyu", "main_menu"));
@@ -195,7 +312,7 @@ public class KeyboardFactory {
 
         List<InlineKeyboardButton> row = new ArrayList<>();
         row.add(createInlineButton("🗑️ O'chirish", "delete_service_" + serviceId));
-        row.add(createInlineButton("✏️ Tahrirlash", "edit_service_" + serviceId));
+        row.add(createInlineButton("✏️ Tahrirlash", CallbackData.editService(serviceId)));
         rows.add(row);
 
         rows.add(createButtonRow("🔙 Orqaga", "manage_services"));
@@ -204,7 +321,7 @@ public class KeyboardFactory {
     }
 
     // Yangi: Admin statistikasi uchun qo'shimcha tugmalar
-    public static InlineKeyboardMarkup createStatsKeyboard() {
+    static InlineKeyboardMarkup buildStatsKeyboard() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
@@ -217,6 +334,71 @@ public class KeyboardFactory {
         return markup;
     }
 
+    // Admin navbatlar ro'yxati: sahifalar, sana filtrlari va xizmat filtrlari
+    public static InlineKeyboardMarkup createAppointmentsPageKeyboard(AppointmentRepository.AppointmentFilter filter,
+                                                                      AppointmentRepository.AppointmentPage page) {
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        String code = filter.encode();
+
+        List<InlineKeyboardButton> navigation = new ArrayList<>();
+        if (page.hasPrevious()) {
+            navigation.add(createInlineButton("◀️ Oldingi", "apl_p_" + code + "_" + page.getFirstStart() + "_" + page.getFirstId()));
+        }
+        if (page.hasNext()) {
+            navigation.add(createInlineButton("Keyingi ▶️", "apl_n_" + code + "_" + page.getLastStart() + "_" + page.getLastId()));
+        }
+        if (!navigation.isEmpty()) {
+            rows.add(navigation);
+        }
+
+        LocalDate today = LocalDate.now();
+        int serviceId = filter.getServiceId();
+        rows.add(createDoubleButtonRow(
+                "📅 Kelgusi", "apl_f_" + AppointmentRepository.AppointmentFilter.upcoming().withService(serviceId).encode(),
+                "📆 Bugun", "apl_f_" + AppointmentRepository.AppointmentFilter.between(today, today.plusDays(1)).withService(serviceId).encode()));
+        rows.add(createDoubleButtonRow(
+                "🗓 7 kun", "apl_f_" + AppointmentRepository.AppointmentFilter.between(today, today.plusDays(7)).withService(serviceId).encode(),
+                "🗂 Hammasi", "apl_f_" + AppointmentRepository.AppointmentFilter.all().withService(serviceId).encode()));
+
+        List<InlineKeyboardButton> serviceRow = new ArrayList<>();
+        for (var service : serviceRepo.getAllServices()) {
+            if (service.getId() == serviceId) {
+                continue;
+            }
+            serviceRow.add(createInlineButton("🛠 " + service.getName(), "apl_f_" + filter.withService(service.getId()).encode()));
+            if (serviceRow.size() == 2) {
+                rows.add(serviceRow);
+                serviceRow = new ArrayList<>();
+            }
+        }
+        if (serviceId != 0) {
+            serviceRow.add(createInlineButton("🛠 Barcha xizmatlar", "apl_f_" + filter.withService(0).encode()));
+        }
+        if (!serviceRow.isEmpty()) {
+            rows.add(serviceRow);
+        }
+
+        rows.add(createButtonRow("📥 Excel'ga yuklash", "apx_" + code));
+        rows.add(createButtonRow("🔙 Admin menyu", "admin_menu"));
+        markup.setKeyboard(rows);
+        return markup;
+    }
+
+    // Oy statistikasi: oldingi/keyingi oyga o'tish va boshqa ko'rinishlar
+    public static InlineKeyboardMarkup createMonthStatsKeyboard(YearMonth month) {
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+
+        rows.add(createDoubleButtonRow(
+                "◀️ " + month.minusMonths(1), CallbackData.statsMonth(month.minusMonths(1)),
+                month.plusMonths(1) + " ▶️", CallbackData.statsMonth(month.plusMonths(1))));
+        rows.addAll(STATS_KEYBOARD.getKeyboard());
+
+        markup.setKeyboard(rows);
+        return markup;
+    }
+
     // Yangi: Navbatni tasdiqlash/bekor qilish uchun keyboard
     public static InlineKeyboardMarkup createAppointmentActionsKeyboard(int appointmentId) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
@@ -235,37 +417,19 @@ public class KeyboardFactory {
     }
 
     // Yangi: Kunlik vaqtlar uchun qo'shimcha variant
-    public static InlineKeyboardMarkup createTimesKeyboardWithMoreOptions(LocalDate date, Predicate<String> isBooked) {
+    public static InlineKeyboardMarkup createTimesKeyboardWithMoreOptions(LocalDate date, long freeSlots) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-
-        // YANGI: 8:00 dan 19:00 gacha
-        for (int hour = 8; hour <= 19; hour++) {
-            List<InlineKeyboardButton> row = new ArrayList<>();
-            for (int minute = 0; minute < 60; minute += 30) {
-                LocalDateTime slot = LocalDateTime.of(date, LocalTime.of(hour, minute));
-                String slotStr = slot.format(formatter);
-
-                if (slot.isAfter(LocalDateTime.now()) && !isBooked.test(slotStr)) {
-                    String buttonText = "🕒 " + slot.format(timeFormatter);
-                    row.add(createInlineButton(buttonText, "select_time_" + slotStr));
-                }
-            }
-            if (!row.isEmpty()) {
-                rows.add(row);
-            }
-        }
+        addTimeRows(rows, date, freeSlots, "🕒 ");
 
         // Agar bo'sh vaqtlar kam bo'lsa
         if (rows.isEmpty()) {
             rows.add(createButtonRow("❌ Bu kunda bo'sh vaqt yo'q", "no_time_available"));
             rows.add(createButtonRow("📅 Boshqa kun tanlash", "change_day"));
-            rows.add(createButtonRow("🔄 Yangilash", "refresh_times_" + date));
+            rows.add(createButtonRow("🔄 Yangilash", CallbackData.showDay(date)));
         } else {
-            rows.add(createButtonRow("🔄 Yangilash", "refresh_times_" + date));
+            rows.add(createButtonRow("🔄 Yangilash", CallbackData.showDay(date)));
             rows.add(createButtonRow("📅 Boshqa kun", "change_day"));
         }
 
@@ -274,13 +438,12 @@ public class KeyboardFactory {
     }
 
     // Yangi: Xizmat tanlash uchun kengaytirilgan variant
-    public static InlineKeyboardMarkup createServicesKeyboardWithIcons() {
+    static InlineKeyboardMarkup buildServicesKeyboardWithIcons(List<ServiceRepository.Service> services) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
-        var services = serviceRepo.getAllServices();
         for (var service : services) {
-            String callbackData = "service_" + service.getId();
+            String callbackData = CallbackData.service(service.getId());
             String buttonText = getServiceIcon(service.getName()) + " " + service.getName();
 
             List<InlineKeyboardButton> row = new ArrayList<>();
@@ -326,7 +489,7 @@ public class KeyboardFactory {
         for (var service : services) {
             if (service.getId() != currentServiceId) {
                 String buttonText = "🔁 " + service.getName();
-                rows.add(createButtonRow(buttonText, "service_" + service.getId()));
+                rows.add(createButtonRow(buttonText, CallbackData.service(service.getId())));
             }
         }
 
@@ -336,6 +499,17 @@ public class KeyboardFactory {
     }
 
     // Asosiy yordamchi metodlar
+
+    // Umumiy foydalaniladigan klaviatura qatorlarini o'zgarmas qilish
+    private static InlineKeyboardMarkup freeze(InlineKeyboardMarkup markup) {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        for (List<InlineKeyboardButton> row : markup.getKeyboard()) {
+            rows.add(List.copyOf(row));
+        }
+        markup.setKeyboard(List.copyOf(rows));
+        return markup;
+    }
+
     private static List<InlineKeyboardButton> createButtonRow(String text, String callback) {
         List<InlineKeyboardButton> row = new ArrayList<>();
         row.add(createInlineButton(text, callback));
@@ -358,7 +532,7 @@ public class KeyboardFactory {
     }
 
     // Yangi: Emergency yoki tez yordam tugmalari
-    public static InlineKeyboardMarkup createEmergencyKeyboard() {
+    static InlineKeyboardMarkup buildEmergencyKeyboard() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
@@ -372,7 +546,7 @@ public class KeyboardFactory {
     }
 
     // Yangi: Sozlamalar menyusi
-    public static InlineKeyboardMarkup createSettingsKeyboard() {
+    static InlineKeyboardMarkup buildSettingsKeyboard() {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
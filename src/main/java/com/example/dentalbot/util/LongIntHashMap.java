@@ -0,0 +1,144 @@
+package com.example.dentalbot.util;
+
+import java.util.Arrays;
+
+// long -> int xaritasi (open addressing, linear probing). Boxing va Entry obyektlarisiz,
+// shuning uchun minglab kalitlarda ham xotira va GC yuki kichik. Sinxronizatsiya qilinmagan.
+public class LongIntHashMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private final int missingValue;
+
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.missingValue = missingValue;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                return missingValue;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return true;
+            }
+            if (k == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Kalit qiymati ruxsat etilmagan: " + key);
+        }
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size > keys.length * LOAD_FACTOR) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+        }
+    }
+
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == EMPTY) {
+                return missingValue;
+            }
+            if (k == key) {
+                int old = values[i];
+                shiftBack(i, mask);
+                size--;
+                return old;
+            }
+        }
+    }
+
+    // Berilgan chegaradan kichik barcha kalitlarni o'chirish
+    public void removeKeysBelow(long bound) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length];
+        values = new int[oldValues.length];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldKeys[i] >= bound) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // O'chirilgan katakdan keyingi zanjirni orqaga surish (tombstone'siz)
+    private void shiftBack(int gap, int mask) {
+        for (int i = (gap + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            int home = index(keys[i], mask);
+            boolean movable = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+            if (movable) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.dentalbot.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Dastur metrikalari (Prometheus matn formatida chiqariladi, MetricsServer /metrics).
+// Histogramma - belgilangan chegarali bucket'lar, har biri LongAdder: yozish qulfsiz va bir necha
+// o'n nanosekund, oqimlar bir-birini kutmaydi. Kechikishlar nanosekundda yoziladi, soniyada chiqariladi.
+// Label qiymatlari cheklangan to'plamdan bo'lishi kerak (update turi, marshrut nomi, so'rov joyi) -
+// foydalanuvchi matni yoki id label'ga qo'yilmaydi.
+public class Metrics {
+    // 100 mks .. 10 s: handler, SQLite so'rovi va Telegram API chaqiruvi shu oraliqda
+    private static final double[] BOUNDS_SECONDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+            BOUNDS_NANOS[i] = (long) (BOUNDS_SECONDS[i] * 1e9);
+        }
+    }
+
+    private static Metrics instance;
+
+    public static class Histogram {
+        private final String[] labelValues;
+        private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram(String[] labelValues) {
+            this.labelValues = labelValues;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observe(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        // startNanos - System.nanoTime() qiymati
+        public void observeSince(long startNanos) {
+            observe(System.nanoTime() - startNanos);
+        }
+    }
+
+    // Bir xil nomli, label qiymatlari bilan farqlanadigan histogrammalar
+    public static class HistogramFamily {
+        private final String name;
+        private final String help;
+        private final String[] labelNames;
+        private final Map<String, Histogram> children = new ConcurrentHashMap<>();
+
+        private HistogramFamily(String name, String help, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+        }
+
+        public Histogram labels(String... values) {
+            if (values.length != labelNames.length) {
+                throw new IllegalArgumentException(name + ": " + labelNames.length + " ta label kutilgan");
+            }
+            String key = values.length == 1 ? values[0] : String.join("\u0001", values);
+            Histogram histogram = children.get(key);
+            return histogram != null ? histogram : children.computeIfAbsent(key, k -> new Histogram(values.clone()));
+        }
+
+        private void write(StringBuilder out) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            for (Histogram histogram : children.values()) {
+                long cumulative = 0;
+                for (int i = 0; i < histogram.buckets.length; i++) {
+                    cumulative += histogram.buckets[i].sum();
+                    String le = i < BOUNDS_SECONDS.length ? Double.toString(BOUNDS_SECONDS[i]) : "+Inf";
+                    out.append(name).append("_bucket");
+                    writeLabels(out, histogram.labelValues, le);
+                    out.append(' ').append(cumulative).append('\n');
+                }
+                out.append(name).append("_sum");
+                writeLabels(out, histogram.labelValues, null);
+                out.append(' ').append(histogram.sumNanos.sum() / 1e9).append('\n');
+                out.append(name).append("_count");
+                writeLabels(out, histogram.labelValues, null);
+                out.append(' ').append(cumulative).append('\n');
+            }
+        }
+
+        private void writeLabels(StringBuilder out, String[] values, String le) {
+            if (values.length == 0 && le == null) {
+                return;
+            }
+            out.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labelNames[i]).append("=\"");
+                escape(out, values[i]);
+                out.append('"');
+            }
+            if (le != null) {
+                out.append(values.length > 0 ? "," : "").append("le=\"").append(le).append('"');
+            }
+            out.append('}');
+        }
+    }
+
+    // Chiqarish paytida o'qiladigan qiymat: gauge yoki counter (faqat o'sadigan hisoblagich)
+    private static class Gauge {
+        final String type;
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String type, String help, LongSupplier value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    // Nom bo'yicha tartiblangan - chiqish har safar bir xil tartibda
+    private final Map<String, HistogramFamily> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics();
+        }
+        return instance;
+    }
+
+    // Shu nomli oila bo'lsa o'shanisi qaytadi
+    public HistogramFamily histogram(String name, String help, String... labelNames) {
+        return histograms.computeIfAbsent(name, n -> new HistogramFamily(n, help, labelNames));
+    }
+
+    // Qiymat chiqarish paytida o'qiladi; qayta ro'yxatdan o'tkazilsa oxirgisi ishlatiladi
+    public void gauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge("gauge", help, value));
+    }
+
+    // value - boshidan beri o'sib boradigan son; nomi _total bilan tugaydi
+    public void counter(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge("counter", help, value));
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (HistogramFamily family : histograms.values()) {
+            family.write(out);
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            out.append("# HELP ").append(entry.getKey()).append(' ').append(entry.getValue().help).append('\n');
+            out.append("# TYPE ").append(entry.getKey()).append(' ').append(entry.getValue().type).append('\n');
+            out.append(entry.getKey()).append(' ').append(entry.getValue().value.getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.dentalbot.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+// Kun 30 daqiqalik slotlarga bo'lingan: 0 = 00:00, 1 = 00:30, ..., 47 = 23:30.
+// Bir kunning band slotlari bitta long bitmask'da saqlanadi (bit i = slot i band).
+// "Epoch-minute" - mahalliy vaqt 1970-01-01 00:00 dan beri o'tgan daqiqalar (vaqt zonasisiz).
+public class TimeSlots {
+    public static final int SLOT_MINUTES = 30;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    public static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    public static int slotOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    public static LocalTime timeOf(int slot) {
+        int minutes = slot * SLOT_MINUTES;
+        return LocalTime.of(minutes / 60, minutes % 60);
+    }
+
+    public static boolean isSet(long mask, int slot) {
+        return (mask & (1L << slot)) != 0;
+    }
+
+    public static long set(long mask, int slot) {
+        return mask | (1L << slot);
+    }
+
+    public static String format(LocalDateTime dateTime) {
+        return dateTime.format(DATE_TIME_FORMAT);
+    }
+
+    // Bazadagi start_minute qiymatini "yyyy-MM-dd HH:mm" ko'rinishiga
+    public static String format(long epochMinute) {
+        return format(fromEpochMinute(epochMinute));
+    }
+
+    public static LocalDateTime parse(String appointmentTime) {
+        return LocalDateTime.parse(appointmentTime, DATE_TIME_FORMAT);
+    }
+
+    public static long epochMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    public static long epochMinute(LocalDate date) {
+        return date.toEpochDay() * 24 * 60;
+    }
+
+    public static long epochMinute(String appointmentTime) {
+        return epochMinute(parse(appointmentTime));
+    }
+
+    public static LocalDateTime fromEpochMinute(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+}
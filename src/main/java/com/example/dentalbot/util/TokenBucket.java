@@ -0,0 +1,43 @@
+package com.example.dentalbot.util;
+
+// Oddiy token bucket: sekundiga ratePerSecond ta token to'ladi, ko'pi bilan capacity ta yig'iladi.
+public class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, double capacity) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // Bitta token olish; token bo'lmasa false
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    // Keyingi token paydo bo'lguncha qolgan vaqt (nanosekund), token bor bo'lsa 0
+    public synchronized long nanosUntilAvailable() {
+        refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.dentalbot.util;
+
+import com.example.dentalbot.BotConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bitta update'ning izi: navbatda kutish, handler, SQLite so'rovlari va Telegram chaqiruvlari span'lari.
+// Span'lar umumiy halqa buferga qulfsiz yoziladi (eski yozuvlar ustidan yoziladi). Iz handler tugaganda
+// va undan chiqqan barcha Telegram so'rovlari javob olganda yopiladi; umumiy vaqt TRACE_SLOW_MS dan
+// oshsa iz span'lari bilan log'ga chiqariladi. Joriy iz ishchi oqimning ThreadLocal'ida,
+// boshqa oqimlarga (OutboundQueue) retain()/release() bilan uzatiladi.
+public final class Trace {
+    // 2 ning darajasi
+    private static final int RING_SIZE = 8192;
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(BotConfig.TRACE_SLOW_MS);
+
+    private static final AtomicReferenceArray<Span> RING = new AtomicReferenceArray<>(RING_SIZE);
+    private static final AtomicLong RING_INDEX = new AtomicLong();
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private static final class Span {
+        final long traceId;
+        final String name;
+        final String thread;
+        final long start;
+        final long end;
+
+        Span(long traceId, String name, String thread, long start, long end) {
+            this.traceId = traceId;
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final long id = IDS.incrementAndGet();
+    private final long start = System.nanoTime();
+    // Handler (1) va javobi kutilayotgan Telegram so'rovlari
+    private final AtomicInteger open = new AtomicInteger(1);
+    private final AtomicInteger spans = new AtomicInteger();
+    private volatile String name;
+
+    private Trace(String name) {
+        this.name = name;
+    }
+
+    // Yangi iz yoki null (TRACE_SLOW_MS <= 0 - izlash o'chirilgan)
+    public static Trace begin(String name) {
+        return SLOW_NANOS > 0 ? new Trace(name) : null;
+    }
+
+    public static Trace current() {
+        return CURRENT.get();
+    }
+
+    // Joriy oqimni izga bog'laydi (null - bog'lanishni olib tashlaydi)
+    public static void attach(Trace trace) {
+        if (trace == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(trace);
+        }
+    }
+
+    // Joriy oqim izida startNanos dan hozirgacha bo'lgan span; iz bo'lmasa hech narsa qilmaydi
+    public static void span(String name, long startNanos) {
+        Trace trace = CURRENT.get();
+        if (trace != null) {
+            trace.record(name, startNanos, System.nanoTime());
+        }
+    }
+
+    // Iz nomi update turi ma'lum bo'lgach aniqlashtiriladi (masalan, callback marshruti)
+    public void rename(String name) {
+        this.name = name;
+    }
+
+    public void record(String spanName, long startNanos, long endNanos) {
+        spans.incrementAndGet();
+        long index = RING_INDEX.getAndIncrement();
+        RING.set((int) (index & (RING_SIZE - 1)),
+                new Span(id, spanName, Thread.currentThread().getName(), startNanos, endNanos));
+    }
+
+    // Boshqa oqimda davom etadigan ish (masalan, Telegram so'rovi) boshlanishidan oldin
+    public void retain() {
+        open.incrementAndGet();
+    }
+
+    public void release() {
+        if (open.decrementAndGet() == 0) {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed >= SLOW_NANOS) {
+                dump(elapsed);
+            }
+        }
+    }
+
+    private void dump(long elapsed) {
+        List<Span> found = new ArrayList<>();
+        for (int i = 0; i < RING_SIZE; i++) {
+            Span span = RING.get(i);
+            if (span != null && span.traceId == id) {
+                found.add(span);
+            }
+        }
+        found.sort(Comparator.comparingLong(span -> span.start));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Sekin update: iz #").append(id).append(", ").append(millis(elapsed)).append(" ms, ").append(name);
+        for (Span span : found) {
+            sb.append(String.format("%n  %10s ms %9s ms  %s [%s]",
+                    "+" + millis(span.start - start), millis(span.end - span.start), span.name, span.thread));
+        }
+        int lost = spans.get() - found.size();
+        if (lost > 0) {
+            sb.append("\n  (").append(lost).append(" ta span bufer to'lgani uchun saqlanmagan)");
+        }
+        System.out.println(sb);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}